@@ -0,0 +1,36 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Locates and loads the instances of the benchmarks. The instances are read from the <code>data</code> directory of
+ * the working directory, or from the directory given by the <code>bench.data</code> system property.
+ * @version %I%, %G%
+ *
+ */
+public class BenchmarkInstances {
+
+	/**
+	 * 
+	 * @param name the name of the instance, such as <code>nu3496</code>
+	 * @return the TSPLIB file of the instance
+	 */
+	public static Path path(String name){
+		return Paths.get(System.getProperty("bench.data", "data"), name+".tsp.txt");
+	}
+
+	/**
+	 * Loads an instance, from its binary image if possible
+	 * @param name the name of the instance, such as <code>nu3496</code>
+	 * @param matrix the distance matrix backend (see {@link InstanceReader#setMatrixType(String)})
+	 * @return the instance
+	 */
+	public static Instance load(String name, String matrix){
+		InstanceReader reader=new InstanceReader();
+		reader.setMatrixType(matrix);
+		reader.buildInstance(path(name).toString());
+		return reader.getInstance();
+	}
+
+}
@@ -0,0 +1,38 @@
+package polytech.tours.di.parallel.tsp;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate and the bytes allocated per operation
+ * to every result. The results are also written to <code>bench-result.json</code>.
+ * @version %I%, %G%
+ *
+ */
+public class BenchmarkMain {
+
+	/**
+	 * 
+	 * @param args the regular expressions selecting the benchmarks to run, all of them if none
+	 * @throws RunnerException if a benchmark fails
+	 */
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder builder=new OptionsBuilder();
+		if(args.length==0)
+			builder.include("polytech\\.tours\\..*Benchmark");
+		for(String pattern:args){
+			builder.include(pattern);
+		}
+		Options options=builder
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("bench-result.json")
+				.build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,61 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the evaluation of a whole tour by {@link TSPCostCalculator}, on the primitive {@link Tour} and on the
+ * boxed {@link Solution}, for the full and the on-demand distance matrices. The tours are random, so the distances
+ * are read in the worst order for the caches.
+ * @version %I%, %G%
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class CostBenchmark {
+
+	@Param({"qa194", "uy734", "nu3496", "sw24978"})
+	public String instance;
+
+	@Param({"auto", "lazy"})
+	public String matrix;
+
+	private Instance data;
+	private Tour tour;
+	private Solution solution;
+
+	@Setup
+	public void setUp(){
+		data=BenchmarkInstances.load(instance, matrix);
+		tour=new Tour(data.getN());
+		tour.shuffle(new Random(42));
+		solution=tour.toSolution();
+	}
+
+	@Benchmark
+	public double calcOFTour(){
+		return TSPCostCalculator.calcOF(data, tour);
+	}
+
+	@Benchmark
+	public double calcOFSolution(){
+		return TSPCostCalculator.calcOF(data, solution);
+	}
+
+}
@@ -0,0 +1,66 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the computation of a full distance matrix by the sequential loop of
+ * {@link EuclideanCalculator#calc(double[][])} and by {@link EuclideanCalculator#calcParallel(double[][])}. The largest
+ * instances are left out: their matrix would not fit in a default heap.
+ * @version %I%, %G%
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(value=1, jvmArgsAppend="-Xmx4g")
+public class EuclideanBenchmark {
+
+	@Param({"qa194", "uy734", "nu3496", "ym7663"})
+	public String instance;
+
+	private double[][] coordinates;
+
+	@Setup
+	public void setUp() throws IOException{
+		coordinates=TSPLIBParser.parse(BenchmarkInstances.path(instance));
+	}
+
+	@Benchmark
+	public double[][] calc(){
+		return coordinates.length>=EuclideanCalculator.PARALLEL_THRESHOLD
+				? sequential(coordinates) : EuclideanCalculator.calc(coordinates);
+	}
+
+	@Benchmark
+	public double[][] calcParallel(){
+		return EuclideanCalculator.calcParallel(coordinates);
+	}
+
+	//the sequential loop, which calc(double[][]) no longer runs on the largest instances
+	private static double[][] sequential(double[][] coordinates){
+		double[][] matrix=new double[coordinates.length][coordinates.length];
+		for(int i=0; i<coordinates.length; i++){
+			for(int j=i+1; j<coordinates.length; j++){
+				matrix[i][j]=EuclideanCalculator.calc(coordinates[i][0], coordinates[i][1], coordinates[j][0], coordinates[j][1]);
+				matrix[j][i]=matrix[i][j];
+			}
+		}
+		return matrix;
+	}
+
+}
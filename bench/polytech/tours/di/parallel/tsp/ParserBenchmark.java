@@ -0,0 +1,68 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the loading of the instances: the TSPLIB parsing alone, and {@link InstanceReader#buildInstance(String)}
+ * from the text file and from the binary image ({@link InstanceCache}). The instances are built with on-demand
+ * distances so that the distance matrix does not hide the loading.
+ * @version %I%, %G%
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class ParserBenchmark {
+
+	@Param({"qa194", "uy734", "nu3496", "sw24978"})
+	public String instance;
+
+	private Path path;
+
+	@Setup
+	public void setUp(){
+		path=BenchmarkInstances.path(instance);
+		//writes the binary image if it is missing
+		BenchmarkInstances.load(instance, "lazy");
+	}
+
+	@Benchmark
+	public double[][] parse() throws IOException{
+		return TSPLIBParser.parse(path);
+	}
+
+	@Benchmark
+	public Instance buildInstance(){
+		InstanceReader reader=new InstanceReader();
+		reader.setCached(false);
+		reader.setMatrixType("lazy");
+		reader.buildInstance(path.toString());
+		return reader.getInstance();
+	}
+
+	@Benchmark
+	public Instance buildCachedInstance(){
+		InstanceReader reader=new InstanceReader();
+		reader.setMatrixType("lazy");
+		reader.buildInstance(path.toString());
+		return reader.getInstance();
+	}
+
+}
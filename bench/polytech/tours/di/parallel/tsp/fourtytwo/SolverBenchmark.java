@@ -0,0 +1,97 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import polytech.tours.di.parallel.tsp.BenchmarkInstances;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.Tour;
+import polytech.tours.di.parallel.tsp.construction.TourConstructor;
+
+/**
+ * Measures fixed numbers of iterations of {@link Algorithm42}: the construction and local search iterations of a
+ * single worker, and whole deterministic runs of the algorithm (<code>seed</code> and <code>iterations</code> keys).
+ * The random sources are reseeded at each invocation, so every invocation does the same work and the time measures
+ * the solver rather than the luck of the run.
+ * @version %I%, %G%
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class SolverBenchmark {
+
+	@Param({"uy734", "nu3496", "sw24978"})
+	public String instance;
+
+	@Param({"2opt", "lk"})
+	public String localSearch;
+
+	@Param({"random", "greedy"})
+	public String construction;
+
+	@Param({"4"})
+	public int iterations;
+
+	@Param({"2"})
+	public int threads;
+
+	private Instance data;
+	private LocalSearch search;
+	private TourConstructor constructor;
+	private Tour tour;
+
+	@Setup
+	public void setUp(){
+		data=BenchmarkInstances.load(instance, "auto");
+		int k=Math.min(10, data.getN()-1);
+		search=localSearch.equals("lk") ? new LinKernighanSearch(data, data.getCandidateLists(k), 10)
+				: new TwoOptSearch(data, data.getCandidateLists(k));
+		constructor=TourConstructor.create(construction, data);
+		tour=new Tour(data.getN());
+	}
+
+	@Benchmark
+	public double iterate(){
+		Random random=new Random(42);
+		double best=Double.MAX_VALUE;
+		for(int i=0; i<iterations; i++){
+			constructor.build(tour, random);
+			search.optimize(tour);
+			best=Math.min(best, tour.getOF());
+		}
+		return best;
+	}
+
+	@Benchmark
+	public double run(){
+		Properties config=new Properties();
+		config.setProperty("instance", BenchmarkInstances.path(instance).toString());
+		config.setProperty("maxcpu", "0");
+		config.setProperty("verbose", "false");
+		config.setProperty("jmx", "false");
+		config.setProperty("maxthreads", Integer.toString(threads));
+		config.setProperty("localsearch", localSearch);
+		config.setProperty("construction", construction);
+		config.setProperty("seed", "42");
+		config.setProperty("iterations", Integer.toString(iterations));
+		return new Algorithm42().run(config).getOF();
+	}
+
+}
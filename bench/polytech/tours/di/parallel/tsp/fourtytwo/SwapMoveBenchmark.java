@@ -0,0 +1,131 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import polytech.tours.di.parallel.tsp.BenchmarkInstances;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/**
+ * Measures the evaluation of the swap moves of {@link SwapSearch}: the delta of a single move
+ * (<code>computeSwapCost</code> before and after the swap, then the swap undone), and a whole pass of
+ * <code>exploreNeighborhood</code>, reported in moves evaluated per second.
+ * @version %I%, %G%
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=5, time=1)
+@Measurement(iterations=5, time=1)
+@Fork(1)
+public class SwapMoveBenchmark {
+	/**
+	 * Number of moves evaluated by an invocation of {@link #swapDelta(MoveState)}
+	 */
+	private static final int MOVES=1_024;
+
+	@State(Scope.Thread)
+	public static class MoveState {
+		@Param({"qa194", "uy734", "nu3496", "sw24978"})
+		public String instance;
+
+		SwapSearch search;
+		Tour tour;
+		//The pairs of positions i<j of the moves
+		int[] first, second;
+
+		@Setup
+		public void setUp(){
+			Instance data=BenchmarkInstances.load(instance, "auto");
+			int n=data.getN();
+			Random random=new Random(42);
+			search=new SwapSearch(data, null);
+			tour=new Tour(n);
+			tour.shuffle(random);
+			tour.setOF(TSPCostCalculator.calcOF(data, tour));
+			first=new int[MOVES];
+			second=new int[MOVES];
+			for(int m=0; m<MOVES; m++){
+				int i=random.nextInt(n-1);
+				first[m]=i;
+				second[m]=i+1+random.nextInt(n-i-1);
+			}
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class NeighborhoodState {
+		//A pass is O(n^2): the large instances would take seconds per invocation
+		@Param({"qa194", "uy734", "zi929"})
+		public String instance;
+
+		SwapSearch search;
+		Tour tour, walk, start;
+
+		@Setup
+		public void setUp(){
+			Instance data=BenchmarkInstances.load(instance, "auto");
+			int n=data.getN();
+			search=new SwapSearch(data, null);
+			start=new Tour(n);
+			start.shuffle(new Random(42));
+			start.setOF(TSPCostCalculator.calcOF(data, start));
+			tour=new Tour(n);
+			walk=new Tour(n);
+		}
+
+		//Every pass starts from the same tour
+		@Setup(Level.Invocation)
+		public void reset(){
+			start.copyTo(tour);
+		}
+	}
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class MoveCounter {
+		//Moves evaluated, reported as a rate next to the passes per second
+		public long moves;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(MOVES)
+	public double swapDelta(MoveState state){
+		double sum=0;
+		for(int m=0; m<MOVES; m++){
+			int i=state.first[m], j=state.second[m];
+			double before=state.search.computeSwapCost(state.tour, i, j);
+			state.tour.swap(i, j);
+			double after=state.search.computeSwapCost(state.tour, i, j);
+			state.tour.swap(i, j);
+			sum+=before-after;
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public double exploreNeighborhood(NeighborhoodState state, MoveCounter counter){
+		state.search.exploreNeighborhood(state.tour, state.walk);
+		long n=state.tour.size();
+		counter.moves+=n*(n-1)/2;
+		return state.tour.getOF();
+	}
+
+}
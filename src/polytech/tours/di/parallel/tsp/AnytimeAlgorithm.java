@@ -0,0 +1,28 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.util.Properties;
+
+/**
+ * Defines the interface to the algorithms improving a solution over time: they report each improvement while they
+ * run, and can be stopped at any moment, in which case they return the best solution found so far instead of
+ * nothing. {@link #run(Properties)} is a run without listener.
+ * @version %I%, %G%
+ *
+ */
+public interface AnytimeAlgorithm extends Algorithm {
+
+	/**
+	 * Runs the algorithm and returns the best solution found
+	 * @param config the algorithm's configuration
+	 * @param listener receives the improvements of the best solution, may be <code>null</code>
+	 * @return the best solution found before the end of the run, or before {@link #stop()}
+	 */
+	public Solution run(Properties config, ProgressListener listener);
+
+	/**
+	 * Ends the current run as soon as possible; it still returns its best solution. May be called from any thread,
+	 * and does nothing if no run is in progress.
+	 */
+	public void stop();
+
+}
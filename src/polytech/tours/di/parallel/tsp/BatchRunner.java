@@ -0,0 +1,415 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Solves a batch of jobs on threads shared by all of them. The jobs come from a manifest, one job per line made of
+ * <code>key=value</code> pairs that override a default configuration, for instance:
+ * <pre>
+ * # name, instance, algorithm, budget and threads of each job
+ * name=nu-ilk instance=./data/nu3496.tsp.txt algorithm=polytech.tours.di.parallel.tsp.fourtytwo.IteratedLinKernighan maxcpu=30 maxthreads=4
+ * name=sw-ilk instance=./data/sw24978.tsp.txt maxcpu=60 maxthreads=8 construction=greedy
+ * </pre>
+ * <p>
+ * A job reserves as many cores as it has threads (all the cores for <code>maxthreads=0</code>). The jobs start in
+ * the order of the manifest as soon as enough cores are free; while the first waiting job does not fit, a later
+ * job may take the free cores if it ends, according to its <code>maxcpu</code>, before the first one can start, or
+ * if it only uses cores the first one will not need (backfilling). The {@link PooledAlgorithm}s (Algorithm42) run
+ * their threads on a single pool of one thread per core; the other algorithms start their own threads, as many as
+ * the cores of the job. The jobs of {@link SharedInstanceAlgorithm}s (Algorithm42 and the solvers timed by maxcpu of
+ * the <code>fourtytwo</code> package) on the same file with the same loading settings share the same
+ * {@link Instance}, loaded once and released after the last of them; the other algorithms read their own.
+ * <p>
+ * Each result is appended to the output file, a CSV line per job, as soon as the job ends.
+ * @version %I%, %G%
+ *
+ */
+public class BatchRunner {
+	/**
+	 * The keys of the configuration that change how an instance is loaded
+	 */
+	private static final String[] LOADING_KEYS={"instance", "matrix", "lazythreshold", "cachedrows", "cache",
+			"cachecandidates"};
+	/**
+	 * The number of cores shared by the jobs
+	 */
+	private final int cores;
+	/**
+	 * The threads of the pooled algorithms, one per core
+	 */
+	private final ExecutorService workers;
+	/**
+	 * The timeouts and periodic tasks of the pooled algorithms
+	 */
+	private final ScheduledExecutorService scheduler;
+	/**
+	 * The threads driving the jobs, which wait for the workers most of the time
+	 */
+	private final ExecutorService drivers;
+	/**
+	 * The instances being shared, by loading settings
+	 */
+	private final Map<String, SharedInstance> instances=new HashMap<>();
+	/**
+	 * The jobs that ended and whose cores are not released yet
+	 */
+	private final BlockingQueue<Job> ended=new LinkedBlockingQueue<>();
+	/**
+	 * The output file
+	 */
+	private final PrintWriter results;
+	/**
+	 * The beginning of the batch, in {@link System#nanoTime()} time
+	 */
+	private long batchStart;
+
+	/**
+	 * Builds a runner
+	 * @param cores the number of cores shared by the jobs
+	 * @param results receives the results, flushed after each job
+	 */
+	public BatchRunner(int cores, PrintWriter results) {
+		if(cores<=0)
+			throw new IllegalArgumentException("argument cores must be positive");
+		this.cores=cores;
+		this.results=results;
+		this.workers=Executors.newFixedThreadPool(cores, daemonThreads("batch-worker"));
+		this.scheduler=Executors.newSingleThreadScheduledExecutor(daemonThreads("batch-scheduler"));
+		this.drivers=Executors.newCachedThreadPool(daemonThreads("batch-job"));
+	}
+
+	/**
+	 * Runs the jobs of a manifest
+	 * @param args[0] the manifest
+	 * @param args[1] the output file (CSV)
+	 * @param args[2] optional, a configuration file giving the default settings of the jobs
+	 * @throws IOException if a file cannot be read or written
+	 * @throws InterruptedException if the thread is interrupted while waiting for the jobs
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if(args.length<2){
+			System.err.println("usage: BatchRunner manifest results.csv [defaults.xml]");
+			System.exit(2);
+		}
+		Properties defaults=new Properties();
+		if(args.length>2){
+			try(InputStream in=new FileInputStream(args[2])){
+				defaults.loadFromXML(in);
+			}
+		}
+		List<Job> jobs=readManifest(Paths.get(args[0]), defaults);
+		try(PrintWriter out=new PrintWriter(Files.newBufferedWriter(Paths.get(args[1])))){
+			BatchRunner runner=new BatchRunner(Runtime.getRuntime().availableProcessors(), out);
+			runner.run(jobs);
+			runner.shutdown();
+		}
+	}
+
+	/**
+	 * Reads a manifest: blank lines and lines starting with <code>#</code> are ignored, the other lines hold the
+	 * <code>key=value</code> pairs of a job, separated by spaces
+	 * @param manifest the manifest
+	 * @param defaults the settings of the jobs not given by the manifest
+	 * @return the jobs, in the order of the manifest
+	 * @throws IOException if the manifest cannot be read
+	 * @throws IllegalArgumentException if a line is malformed
+	 */
+	public static List<Job> readManifest(Path manifest, Properties defaults) throws IOException {
+		List<Job> jobs=new ArrayList<>();
+		List<String> lines=Files.readAllLines(manifest);
+		for(int l=0; l<lines.size(); l++){
+			String line=lines.get(l).trim();
+			if(line.isEmpty() || line.startsWith("#"))
+				continue;
+			Properties config=new Properties(defaults);
+			for(String pair:line.split("\\s+")){
+				int equals=pair.indexOf('=');
+				if(equals<=0)
+					throw new IllegalArgumentException(manifest+":"+(l+1)+": expected key=value, found '"+pair+"'");
+				config.setProperty(pair.substring(0, equals), pair.substring(equals+1));
+			}
+			if(config.getProperty("instance")==null || config.getProperty("algorithm")==null)
+				throw new IllegalArgumentException(manifest+":"+(l+1)+": instance and algorithm are required");
+			if(config.getProperty("name")==null)
+				config.setProperty("name", "job"+(l+1));
+			jobs.add(new Job(config));
+		}
+		return jobs;
+	}
+
+	/**
+	 * Runs jobs and waits for the end of all of them
+	 * @param jobs the jobs, started in this order when possible
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	public void run(List<Job> jobs) throws InterruptedException {
+		batchStart=System.nanoTime();
+		results.println("name,instance,algorithm,threads,status,of,start_seconds,load_seconds,solve_seconds");
+		results.flush();
+		for(Job job:jobs){
+			job.threads=Math.min(job.threads==0 ? cores : job.threads, cores);
+			instances.computeIfAbsent(job.instanceKey, key -> new SharedInstance()).jobs++;
+		}
+
+		List<Job> waiting=new ArrayList<>(jobs);
+		List<Job> running=new ArrayList<>();
+		int free=cores;
+		while(!waiting.isEmpty() || !running.isEmpty()){
+			free-=startJobs(waiting, running, free);
+			//a job ends: release its cores, then try again
+			Job job=ended.take();
+			do{
+				running.remove(job);
+				free+=job.threads;
+				release(job);
+				job=ended.poll();
+			}while(job!=null);
+		}
+	}
+
+	/**
+	 * Stops the threads of the runner
+	 */
+	public void shutdown() {
+		workers.shutdownNow();
+		scheduler.shutdownNow();
+		drivers.shutdownNow();
+	}
+
+	//Starts the jobs that fit in the free cores, returns the number of cores taken
+	private int startJobs(List<Job> waiting, List<Job> running, int free){
+		int taken=0;
+		//the first waiting jobs start in order
+		while(!waiting.isEmpty() && waiting.get(0).threads<=free-taken){
+			taken+=start(waiting.remove(0), running);
+		}
+		if(waiting.isEmpty())
+			return taken;
+
+		//time at which the first waiting job can start, and cores it will leave free then
+		Job first=waiting.get(0);
+		List<Job> byEnd=new ArrayList<>(running);
+		byEnd.sort((a, b) -> Long.compare(a.expectedEnd, b.expectedEnd));
+		int available=free-taken;
+		long shadowTime=Long.MAX_VALUE;
+		for(Job job:byEnd){
+			available+=job.threads;
+			if(available>=first.threads){
+				shadowTime=job.expectedEnd;
+				break;
+			}
+		}
+		int spare=available-first.threads;
+
+		//backfilling: the other jobs may use the cores the first one does not wait for
+		for(int i=1; i<waiting.size(); i++){
+			Job job=waiting.get(i);
+			if(job.threads>free-taken)
+				continue;
+			//a job without a time budget never ends before the first one starts
+			boolean endsBefore=job.budgetNanos!=Long.MAX_VALUE
+					&& (shadowTime==Long.MAX_VALUE || job.budgetNanos<=shadowTime-System.nanoTime());
+			if(!endsBefore && job.threads>spare)
+				continue;
+			if(!endsBefore)
+				spare-=job.threads;
+			waiting.remove(i--);
+			taken+=start(job, running);
+		}
+		return taken;
+	}
+
+	//Starts a job on a driver thread, returns its number of cores
+	private int start(Job job, List<Job> running){
+		job.expectedEnd=job.budgetNanos==Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime()+job.budgetNanos;
+		running.add(job);
+		SharedInstance shared=instances.get(job.instanceKey);
+		drivers.execute(() -> {
+			try{
+				solve(job, shared);
+			}finally{
+				ended.add(job);
+			}
+		});
+		return job.threads;
+	}
+
+	//Runs a job and writes its result
+	private void solve(Job job, SharedInstance shared){
+		long start=System.nanoTime();
+		double loadSeconds=0;
+		String status="ok";
+		double of=Double.NaN;
+		try{
+			Algorithm algorithm=(Algorithm)Class.forName(job.config.getProperty("algorithm"))
+					.getDeclaredConstructor().newInstance();
+			//a copy of the job settings, defaults included
+			Properties config=new Properties();
+			for(String key:job.config.stringPropertyNames()){
+				config.setProperty(key, job.config.getProperty(key));
+			}
+			config.setProperty("maxthreads", Integer.toString(job.threads));
+			if(algorithm instanceof PooledAlgorithm)
+				((PooledAlgorithm)algorithm).setExecutors(workers, scheduler);
+			if(algorithm instanceof SharedInstanceAlgorithm)
+				((SharedInstanceAlgorithm)algorithm).setInstance(shared.get(config));
+			loadSeconds=(System.nanoTime()-start)/1e9;
+			Solution solution=algorithm.run(config);
+			if(solution==null)
+				status="no solution";
+			else
+				of=solution.getOF();
+		}catch(Exception e){
+			status="failed: "+e;
+		}
+		double solveSeconds=(System.nanoTime()-start)/1e9-loadSeconds;
+		synchronized(results){
+			results.println(String.format(Locale.ROOT, "%s,%s,%s,%d,%s,%.6f,%.3f,%.3f,%.3f",
+					csv(job.config.getProperty("name")), csv(job.config.getProperty("instance")),
+					csv(job.config.getProperty("algorithm")), job.threads, csv(status), of,
+					(start-batchStart)/1e9, loadSeconds, solveSeconds));
+			results.flush();
+		}
+	}
+
+	//Forgets an instance once the last job using it has ended
+	private void release(Job job){
+		SharedInstance shared=instances.get(job.instanceKey);
+		if(--shared.jobs==0)
+			instances.remove(job.instanceKey);
+	}
+
+	//Quotes a CSV field if needed
+	private static String csv(String value){
+		if(value.indexOf(',')<0 && value.indexOf('"')<0 && value.indexOf('\n')<0)
+			return value;
+		return '"'+value.replace("\"", "\"\"")+'"';
+	}
+
+	//Threads that do not keep the JVM alive, named after their pool
+	private static ThreadFactory daemonThreads(String name){
+		AtomicInteger count=new AtomicInteger();
+		return runnable -> {
+			Thread thread=new Thread(runnable, name+"-"+count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * A job of the batch
+	 */
+	public static class Job {
+		/**
+		 * The configuration of the job
+		 */
+		private final Properties config;
+		/**
+		 * The loading settings of the instance, identical for the jobs that can share it
+		 */
+		private final String instanceKey;
+		/**
+		 * The expected duration of the job, {@link Long#MAX_VALUE} if unknown
+		 */
+		private final long budgetNanos;
+		/**
+		 * The number of cores of the job, 0 for all of them until it is scheduled
+		 */
+		private int threads;
+		/**
+		 * The expected end of the job, in {@link System#nanoTime()} time
+		 */
+		private long expectedEnd;
+
+		/**
+		 * Builds a job
+		 * @param config the configuration of the job
+		 */
+		public Job(Properties config) {
+			this.config=config;
+			StringBuilder key=new StringBuilder();
+			for(String name:LOADING_KEYS){
+				String value=config.getProperty(name);
+				if(name.equals("instance"))
+					value=Paths.get(value).toAbsolutePath().normalize().toString();
+				key.append(name).append('=').append(value).append('\n');
+			}
+			this.instanceKey=key.toString();
+			//an iteration budget says nothing about the duration
+			long iterations=Long.parseLong(config.getProperty("iterations", "0"));
+			long seconds=Long.parseLong(config.getProperty("maxcpu", "0"));
+			this.budgetNanos=iterations>0 || seconds<=0 ? Long.MAX_VALUE : seconds*1_000_000_000L;
+			//the threads of a job are reserved beforehand: "auto" reserves all the cores, without tuning
+			String threads=config.getProperty("maxthreads", "0");
+			this.threads=threads.equals("auto") ? 0 : Integer.parseInt(threads);
+		}
+
+		/**
+		 * 
+		 * @return the configuration of the job
+		 */
+		public Properties getConfig() {
+			return config;
+		}
+	}
+
+	/**
+	 * An instance loaded once for all the jobs using it
+	 */
+	private static class SharedInstance {
+		/**
+		 * The number of jobs using the instance that have not ended yet, only used by the dispatching thread
+		 */
+		private int jobs;
+		/**
+		 * The instance, completed by the first job that needs it
+		 */
+		private final CompletableFuture<Instance> instance=new CompletableFuture<>();
+		/**
+		 * Whether a job has started loading the instance
+		 */
+		private boolean isLoading;
+
+		//Loads the instance on the first call, waits for it on the next ones
+		Instance get(Properties config) throws InterruptedException, ExecutionException{
+			boolean load;
+			synchronized(this){
+				load=!isLoading;
+				isLoading=true;
+			}
+			if(load){
+				try{
+					InstanceReader reader=new InstanceReader();
+					reader.configure(config);
+					reader.buildInstance(config.getProperty("instance"));
+					instance.complete(reader.getInstance());
+				}catch(RuntimeException e){
+					instance.completeExceptionally(e);
+				}
+			}
+			return instance.get();
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.util.stream.IntStream;
+
+/**
+ * Holds, for every city of an instance, its k nearest neighbors sorted by increasing distance. Neighborhoods can
+ * restrict themselves to moves creating an edge towards a candidate, which turns O(n&sup2;) scans into O(n k) ones.
+ * <p>
+ * The lists are built with a {@link KDTree} in O(n log n) when the instance has coordinates, and by brute force
+ * otherwise; in both cases the cities are processed in parallel. Instances of this class are immutable; get them
+ * through {@link Instance#getCandidateLists(int)} so that all the workers share the same lists.
+ * @version %I%, %G%
+ *
+ */
+public class CandidateLists {
+	/**
+	 * Number of cities handled by a parallel task
+	 */
+	private static final int BLOCK=1_024;
+	/**
+	 * The number of candidates per city
+	 */
+	private final int k;
+	/**
+	 * The number of slots reserved per city in {@link #neighbors}
+	 */
+	private final int stride;
+	/**
+	 * The candidates of city i are stored from index <code>i*stride</code>
+	 */
+	private final int[] neighbors;
+
+	//Shares the lists of another instance
+	private CandidateLists(int k, int stride, int[] neighbors){
+		this.k=k;
+		this.stride=stride;
+		this.neighbors=neighbors;
+	}
+
+	/**
+	 * Computes the candidate lists of an instance
+	 * @param instance the instance
+	 * @param k the number of candidates per city, at most n-1
+	 * @return the lists
+	 */
+	public static CandidateLists build(Instance instance, int k){
+		int n=instance.getN();
+		if(k<=0 || k>=n)
+			throw new IllegalArgumentException("argument k must be between 1 and n-1");
+		int[] neighbors=new int[n*k];
+		int blocks=(n+BLOCK-1)/BLOCK;
+		if(instance.hasCoordinates()){
+			KDTree tree=instance.getKDTree();
+			IntStream.range(0, blocks).parallel().forEach(b -> {
+				KDTree.Query query=tree.newQuery(k);
+				for(int i=b*BLOCK; i<Math.min(n, (b+1)*BLOCK); i++){
+					query.search(i);
+					for(int r=0; r<k; r++){
+						neighbors[i*k+r]=query.getNode(r);
+					}
+				}
+			});
+		}else{
+			IntStream.range(0, blocks).parallel().forEach(b -> {
+				int[] nodes=new int[k];
+				double[] distances=new double[k];
+				for(int i=b*BLOCK; i<Math.min(n, (b+1)*BLOCK); i++){
+					bruteForce(instance, i, nodes, distances);
+					System.arraycopy(nodes, 0, neighbors, i*k, k);
+				}
+			});
+		}
+		return new CandidateLists(k, k, neighbors);
+	}
+
+	/**
+	 * Wraps lists computed beforehand
+	 * @param k the number of candidates per city
+	 * @param neighbors the candidates of city i, sorted, from index <code>i*k</code>
+	 * @return the lists, backed by <code>neighbors</code>
+	 */
+	static CandidateLists wrap(int k, int[] neighbors){
+		if(k<=0 || neighbors.length%k!=0)
+			throw new IllegalArgumentException("argument neighbors must hold k candidates per city");
+		return new CandidateLists(k, k, neighbors);
+	}
+
+	//Finds the k nearest neighbors of city i with an insertion sort over all the cities
+	private static void bruteForce(Instance instance, int i, int[] nodes, double[] distances){
+		int k=nodes.length;
+		int count=0;
+		for(int j=0; j<instance.getN(); j++){
+			if(j==i) continue;
+			double d=instance.getDistance(i, j);
+			if(count==k && d>=distances[k-1]) continue;
+			int r=count<k ? count++ : k-1;
+			while(r>0 && distances[r-1]>d){
+				nodes[r]=nodes[r-1];
+				distances[r]=distances[r-1];
+				r--;
+			}
+			nodes[r]=j;
+			distances[r]=d;
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of candidates per city
+	 */
+	public int getK(){
+		return k;
+	}
+
+	/**
+	 * 
+	 * @return the number of cities
+	 */
+	public int getN(){
+		return neighbors.length/stride;
+	}
+
+	/**
+	 * 
+	 * @param city the city
+	 * @param rank the rank of the candidate, 0 for the nearest
+	 * @return the candidate of the given rank of <code>city</code>
+	 */
+	public int get(int city, int rank){
+		return neighbors[city*stride+rank];
+	}
+
+	/**
+	 * Returns lists holding only the first candidates of these ones, without copying them
+	 * @param k the number of candidates per city, at most {@link #getK()}
+	 * @return the truncated lists
+	 */
+	public CandidateLists limit(int k){
+		if(k==this.k)
+			return this;
+		if(k<=0 || k>this.k)
+			throw new IllegalArgumentException("argument k must be between 1 and "+this.k);
+		return new CandidateLists(k, stride, neighbors);
+	}
+
+}
@@ -0,0 +1,41 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Stores every distance in a full <code>double[n][n]</code> matrix. This is the historical storage of
+ * {@link Instance}: fastest lookups, but memory grows in O(n&sup2;).
+ * @version %I%, %G%
+ *
+ */
+public class DenseDistanceMatrix implements DistanceMatrix {
+	/**
+	 * The distance matrix
+	 */
+	private final double[][] matrix;
+
+	/**
+	 * Wraps a distance matrix
+	 * @param matrix the distance matrix, rows are not copied
+	 */
+	public DenseDistanceMatrix(double[][] matrix) {
+		this.matrix=matrix.clone();
+	}
+
+	@Override
+	public double getDistance(int i, int j) {
+		return this.matrix[i][j];
+	}
+
+	@Override
+	public int getN() {
+		return this.matrix.length;
+	}
+
+	/**
+	 * 
+	 * @return a copy of the distance matrix
+	 */
+	public double[][] getMatrix() {
+		return this.matrix.clone();
+	}
+
+}
@@ -0,0 +1,25 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Defines the storage backend of the distances held by an {@link Instance}. Implementations must be safe for
+ * concurrent reads, since every worker of an algorithm queries the same instance.
+ * @version %I%, %G%
+ *
+ */
+public interface DistanceMatrix {
+
+	/**
+	 * 
+	 * @param i the first node
+	 * @param j the second node
+	 * @return the distance between node <code>i</code> and node <code>j</code>
+	 */
+	public double getDistance(int i, int j);
+
+	/**
+	 * 
+	 * @return the number of nodes covered by the matrix
+	 */
+	public int getN();
+
+}
@@ -1,12 +1,26 @@
 package polytech.tours.di.parallel.tsp;
 
+import java.util.stream.IntStream;
+
 /**
  * Implements a simple euclidean distance calculator
+ * <p>
+ * Large distance matrices are built in parallel: the upper triangle is cut into square tiles small enough to stay in
+ * cache, each tile is computed row by row and then mirrored into the lower triangle while it is still cached. Every
+ * entry goes through {@link #calc(double, double, double, double)}, so both paths give the same distances.
  * @author Jorge E. Mendoza (dev@jorge-mendoza.com)
  * @version %I%, %G%
  *
  */
 public class EuclideanCalculator {
+	/**
+	 * Number of points from which {@link #calc(double[][])} builds the matrix in parallel
+	 */
+	public static final int PARALLEL_THRESHOLD=2_000;
+	/**
+	 * Side of a tile: a tile and its mirror take 2*64*64*8 bytes, which fits in a first level cache
+	 */
+	private static final int TILE=64;
 	
 	/**
 	 * Computes the Euclidean distance between two points
@@ -21,13 +35,15 @@ public class EuclideanCalculator {
 	}
 
 	/**
-	 * Computes a matrix of Euclidean distances from a coordinates matrix
+	 * Computes a matrix of Euclidean distances from a coordinates matrix. From {@link #PARALLEL_THRESHOLD} points on,
+	 * the matrix is built by {@link #calcParallel(double[][])}.
 	 * @param coordinates the coordinates 
 	 * @return the distance matrix
 	 */
 	public static double[][] calc(double[][] coordinates){
-		if(coordinates[0].length!=2)
-			throw new IllegalArgumentException("argument coordinates must be a matrix with 2 columns and an open number of files");
+		checkCoordinates(coordinates);
+		if(coordinates.length>=PARALLEL_THRESHOLD)
+			return calcParallel(coordinates);
 		
 		double[][] matrix=new double[coordinates.length][coordinates.length];
 		for(int i=0; i< coordinates.length; i++){
@@ -39,4 +55,63 @@ public class EuclideanCalculator {
 		return matrix;
 	}
 
+	/**
+	 * Computes a matrix of Euclidean distances from a coordinates matrix with all the processors, one tile row of the
+	 * upper triangle per task. The matrix is exactly the one of the sequential computation.
+	 * @param coordinates the coordinates
+	 * @return the distance matrix
+	 */
+	public static double[][] calcParallel(double[][] coordinates){
+		checkCoordinates(coordinates);
+		int n=coordinates.length;
+		double[] x=new double[n];
+		double[] y=new double[n];
+		for(int i=0; i<n; i++){
+			x[i]=coordinates[i][0];
+			y[i]=coordinates[i][1];
+		}
+
+		//the rows are allocated, hence zeroed, in parallel too
+		double[][] matrix=new double[n][];
+		IntStream.range(0, n).parallel().forEach(i -> matrix[i]=new double[n]);
+
+		/* tile row t holds tiles-t tiles: pairing the rows t and tiles-1-t gives every task
+		 * the same amount of work */
+		int tiles=(n+TILE-1)/TILE;
+		IntStream.range(0, (tiles+1)/2).parallel().forEach(t -> {
+			calcTileRow(x, y, matrix, t);
+			if(tiles-1-t!=t)
+				calcTileRow(x, y, matrix, tiles-1-t);
+		});
+		return matrix;
+	}
+
+	//fills the tiles (t, u) for u>=t and their mirrors
+	private static void calcTileRow(double[] x, double[] y, double[][] matrix, int t){
+		int n=x.length;
+		int rowStart=t*TILE, rowEnd=Math.min(n, rowStart+TILE);
+		for(int colStart=rowStart; colStart<n; colStart+=TILE){
+			int colEnd=Math.min(n, colStart+TILE);
+			for(int i=rowStart; i<rowEnd; i++){
+				double[] row=matrix[i];
+				for(int j=Math.max(colStart, i+1); j<colEnd; j++){
+					row[j]=calc(x[i], y[i], x[j], y[j]);
+				}
+			}
+			//the tile is still in cache: mirror it one row of the lower triangle at a time
+			for(int j=colStart; j<colEnd; j++){
+				double[] row=matrix[j];
+				for(int i=rowStart; i<Math.min(rowEnd, j); i++){
+					row[i]=matrix[i][j];
+				}
+			}
+		}
+	}
+
+	//rejects coordinates that are not pairs
+	private static void checkCoordinates(double[][] coordinates){
+		if(coordinates[0].length!=2)
+			throw new IllegalArgumentException("argument coordinates must be a matrix with 2 columns and an open number of files");
+	}
+
 }
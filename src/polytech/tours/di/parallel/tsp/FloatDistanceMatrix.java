@@ -0,0 +1,48 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Stores the full distance matrix in a single row-major <code>float[]</code>. It takes half the memory of a
+ * <code>double[][]</code> matrix and a lookup touches one contiguous array; distances are rounded to the nearest
+ * float (about 7 significant digits).
+ * @version %I%, %G%
+ *
+ */
+public class FloatDistanceMatrix implements DistanceMatrix {
+	/**
+	 * The number of nodes
+	 */
+	private final int n;
+	/**
+	 * The distances, row after row
+	 */
+	private final float[] matrix;
+
+	/**
+	 * Builds the matrix from a coordinates matrix
+	 * @param coordinates the coordinates matrix (one row per node, two columns)
+	 */
+	public FloatDistanceMatrix(double[][] coordinates) {
+		this.n=coordinates.length;
+		if((long)n*n>Integer.MAX_VALUE)
+			throw new IllegalArgumentException("too many nodes for a single array: "+n);
+		this.matrix=new float[n*n];
+		for(int i=0; i<n; i++){
+			for(int j=i+1; j<n; j++){
+				float d=(float)EuclideanCalculator.calc(coordinates[i][0],coordinates[i][1],coordinates[j][0],coordinates[j][1]);
+				matrix[i*n+j]=d;
+				matrix[j*n+i]=d;
+			}
+		}
+	}
+
+	@Override
+	public double getDistance(int i, int j) {
+		return matrix[i*n+j];
+	}
+
+	@Override
+	public int getN() {
+		return n;
+	}
+
+}
@@ -4,21 +4,51 @@ import java.text.DecimalFormat;
 /**
  * Provides a concrete implementation of a TSP instance.
  * Instances of this class are inmutable.
+ *
+ * The distances are held by a {@link DistanceMatrix} backend: either a full matrix or, for large instances, a
+ * matrix computed on demand from the node coordinates.
  * @author Jorge E. Mendoza (dev@jorge-mendoza.com)
  * @version %I%, %G%
  *
  */
 public class Instance{
 	/**
-	 * The distance matrix
+	 * The distances between the nodes
+	 */
+	private final DistanceMatrix distances;
+	/**
+	 * The node coordinates (one row per node, two columns), <code>null</code> if unknown
+	 */
+	private final double[][] coordinates;
+	/**
+	 * The largest candidate lists computed so far, shared by all the callers
+	 */
+	private volatile CandidateLists candidates;
+	/**
+	 * The spatial index of the nodes, built on first use
 	 */
-	private final double[][] matrix;
+	private volatile KDTree kdTree;
 	/**
 	 * Constructs a new TSP instance
-	 * @param n number of nodes in the underlying graph
+	 * @param matrix the distance matrix
 	 */
 	public Instance(double matrix[][]){
-		this.matrix=matrix.clone();
+		this.distances=new DenseDistanceMatrix(matrix);
+		this.coordinates=null;
+	}
+	/**
+	 * Constructs a new TSP instance from the coordinates of its nodes
+	 * @param coordinates the coordinates matrix (one row per node, two columns)
+	 * @param distances the distances between the nodes
+	 */
+	public Instance(double[][] coordinates, DistanceMatrix distances){
+		if(coordinates.length!=distances.getN())
+			throw new IllegalArgumentException("the coordinates and the distances must cover the same number of nodes");
+		this.distances=distances;
+		this.coordinates=new double[coordinates.length][];
+		for(int i=0; i<coordinates.length; i++){
+			this.coordinates[i]=coordinates[i].clone();
+		}
 	}
 	/**
 	 * 
@@ -27,21 +57,135 @@ public class Instance{
 	 * @return the distance between node <code>i</code> and node <code>j</code>
 	 */
 	public double getDistance(int i, int j){
-		return this.matrix[i][j];
+		return this.distances.getDistance(i, j);
 	}
 	/**
 	 * 
 	 * @return the number of nodes in the instance
 	 */
 	public int getN(){
-		return matrix.length;
+		return distances.getN();
+	}
+	/**
+	 * 
+	 * @return the backend holding the distances
+	 */
+	public DistanceMatrix getDistances(){
+		return this.distances;
+	}
+	/**
+	 * 
+	 * @return <code>true</code> if the node coordinates are known
+	 */
+	public boolean hasCoordinates(){
+		return this.coordinates!=null;
+	}
+	/**
+	 * 
+	 * @param i the node
+	 * @return the coordinate on the x axis of node <code>i</code>
+	 */
+	public double getX(int i){
+		return this.coordinates[i][0];
 	}
 	/**
 	 * 
+	 * @param i the node
+	 * @return the coordinate on the y axis of node <code>i</code>
+	 */
+	public double getY(int i){
+		return this.coordinates[i][1];
+	}
+	/**
+	 * Returns the k nearest neighbors of every city. The lists are computed on the first call (see
+	 * {@link CandidateLists#build(Instance, int)}) and then shared: later calls asking for as many or fewer
+	 * candidates return a view of the same lists.
+	 * @param k the number of candidates per city, at most n-1
+	 * @return the candidate lists
+	 */
+	public CandidateLists getCandidateLists(int k){
+		CandidateLists lists=this.candidates;
+		if(lists==null || lists.getK()<k){
+			synchronized(this){
+				lists=this.candidates;
+				if(lists==null || lists.getK()<k){
+					lists=CandidateLists.build(this, k);
+					this.candidates=lists;
+				}
+			}
+		}
+		return lists.limit(k);
+	}
+	/**
+	 * Seeds the candidate lists with lists computed beforehand, such as the ones of an {@link InstanceCache}
+	 * @param lists the lists, kept only if they hold more candidates than the current ones
+	 */
+	synchronized void setCandidateLists(CandidateLists lists){
+		if(lists.getN()!=getN())
+			throw new IllegalArgumentException("the lists do not match the instance");
+		if(this.candidates==null || this.candidates.getK()<lists.getK())
+			this.candidates=lists;
+	}
+	/**
+	 * Returns a k-d tree over the node coordinates. The tree is built on the first call and then shared.
+	 * @return the k-d tree
+	 * @throws IllegalStateException if the instance has no coordinates
+	 */
+	public KDTree getKDTree(){
+		if(!hasCoordinates())
+			throw new IllegalStateException("the instance has no coordinates");
+		KDTree tree=this.kdTree;
+		if(tree==null){
+			synchronized(this){
+				tree=this.kdTree;
+				if(tree==null){
+					tree=new KDTree(this);
+					this.kdTree=tree;
+				}
+			}
+		}
+		return tree;
+	}
+	/**
+	 * Returns the instance made of some nodes of this one, such as a cluster of a spatial decomposition. It keeps the
+	 * coordinates of the nodes and reads its distances from this instance, so it costs O(m) memory for m nodes.
+	 * @param nodes the nodes of this instance, node i of the sub-instance being node <code>nodes[i]</code>
+	 * @return the sub-instance
+	 */
+	public Instance subInstance(int[] nodes){
+		int[] copy=nodes.clone();
+		DistanceMatrix matrix=new SubDistanceMatrix(this, copy);
+		if(!hasCoordinates()){
+			double[][] distances=new double[copy.length][copy.length];
+			for(int i=0; i<copy.length; i++){
+				for(int j=0; j<copy.length; j++){
+					distances[i][j]=matrix.getDistance(i, j);
+				}
+			}
+			return new Instance(distances);
+		}
+		double[][] subCoordinates=new double[copy.length][];
+		for(int i=0; i<copy.length; i++){
+			subCoordinates[i]=coordinates[copy[i]];
+		}
+		return new Instance(subCoordinates, matrix);
+	}
+	/**
+	 * Returns the full distance matrix. If the instance is not backed by a full matrix, the matrix is computed,
+	 * which takes O(n&sup2;) memory: prefer {@link #getDistance(int, int)}.
 	 * @return a copy of the distance matrix
 	 */
 	public double[][] getDistanceMatrix(){
-		return this.matrix.clone();
+		if(distances instanceof DenseDistanceMatrix)
+			return ((DenseDistanceMatrix)distances).getMatrix();
+		int n=getN();
+		double[][] matrix=new double[n][n];
+		for(int i=0; i<n; i++){
+			for(int j=0; j<n; j++){
+				matrix[i][j]=distances.getDistance(i, j);
+			}
+		}
+		return matrix;
 	}
 	
 	/**
@@ -50,9 +194,10 @@ public class Instance{
 	 */
 	public void printDistanceMatrix(String format){
 		DecimalFormat df=new DecimalFormat(format);
-		for(int i=0; i<this.matrix.length;i++){
-			for(int j=0; j<this.matrix[0].length; j++){
-				System.out.print(df.format(matrix[i][j])+"\t");
+		int n=getN();
+		for(int i=0; i<n;i++){
+			for(int j=0; j<n; j++){
+				System.out.print(df.format(getDistance(i, j))+"\t");
 			}
 			System.out.print("\n");
 		}
@@ -0,0 +1,191 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Holds the binary image of an instance file: the node coordinates and, optionally, the candidate lists of the
+ * nodes. The image is written once next to the text file (<code>name.tsp.txt.bin</code>) and then loaded with
+ * {@link FileChannel#map(FileChannel.MapMode, long, long)} instead of parsing the text and searching the nearest
+ * neighbors again.
+ * <p>
+ * An image records the size and the modification time of the text file it comes from, and a CRC32 of its content:
+ * it is ignored as soon as the text file changes or the image is damaged. The layout is:
+ * <pre>
+ * int magic, int version, long source size, long source modification time (ms), int n, int k, long CRC32
+ * double[2n] coordinates (x then y of each node)
+ * int[n*k] candidates (the k nearest neighbors of each node)
+ * </pre>
+ * @version %I%, %G%
+ *
+ */
+public class InstanceCache {
+	/**
+	 * Suffix appended to the name of the text file
+	 */
+	public static final String SUFFIX=".bin";
+	/**
+	 * The first bytes of an image ("TSPC")
+	 */
+	private static final int MAGIC=0x54535043;
+	/**
+	 * The version of the layout
+	 */
+	private static final int VERSION=1;
+	/**
+	 * The size of the header, in bytes
+	 */
+	private static final int HEADER=40;
+	/**
+	 * The node coordinates
+	 */
+	private final double[][] coordinates;
+	/**
+	 * The candidate lists, <code>null</code> if not stored
+	 */
+	private final CandidateLists candidates;
+
+	/**
+	 * Builds an image
+	 * @param coordinates the node coordinates
+	 * @param candidates the candidate lists, <code>null</code> to store none
+	 */
+	public InstanceCache(double[][] coordinates, CandidateLists candidates) {
+		this.coordinates=coordinates;
+		this.candidates=candidates;
+	}
+
+	/**
+	 * 
+	 * @return the node coordinates
+	 */
+	public double[][] getCoordinates() {
+		return coordinates;
+	}
+
+	/**
+	 * 
+	 * @return the candidate lists, <code>null</code> if the image holds none
+	 */
+	public CandidateLists getCandidates() {
+		return candidates;
+	}
+
+	/**
+	 * 
+	 * @param source the text file
+	 * @return the image file of <code>source</code>
+	 */
+	public static Path getImagePath(Path source) {
+		return source.resolveSibling(source.getFileName()+SUFFIX);
+	}
+
+	/**
+	 * Loads the image of a text file
+	 * @param source the text file
+	 * @return the image, <code>null</code> if there is none or if it is stale or damaged
+	 * @throws IOException if the text file cannot be read
+	 */
+	public static InstanceCache read(Path source) throws IOException {
+		Path image=getImagePath(source);
+		if(!Files.isRegularFile(image))
+			return null;
+		long sourceSize=Files.size(source);
+		long sourceTime=Files.getLastModifiedTime(source).toMillis();
+
+		try(FileChannel channel=FileChannel.open(image, StandardOpenOption.READ)){
+			long size=channel.size();
+			if(size<HEADER || size>Integer.MAX_VALUE)
+				return null;
+			ByteBuffer buffer=channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if(buffer.getInt(0)!=MAGIC || buffer.getInt(4)!=VERSION
+					|| buffer.getLong(8)!=sourceSize || buffer.getLong(16)!=sourceTime)
+				return null;
+			int n=buffer.getInt(24), k=buffer.getInt(28);
+			if(n<=0 || k<0 || size!=HEADER+16L*n+4L*n*k)
+				return null;
+			buffer.position(HEADER);
+			if(checksum(buffer)!=buffer.getLong(32))
+				return null;
+
+			double[][] coordinates=new double[n][2];
+			DoubleBuffer doubles=buffer.position(HEADER).slice().asDoubleBuffer();
+			for(int i=0; i<n; i++){
+				doubles.get(coordinates[i]);
+			}
+			CandidateLists candidates=null;
+			if(k>0){
+				int[] neighbors=new int[n*k];
+				IntBuffer ints=buffer.position(HEADER+16*n).slice().asIntBuffer();
+				ints.get(neighbors);
+				candidates=CandidateLists.wrap(k, neighbors);
+			}
+			return new InstanceCache(coordinates, candidates);
+		}catch(IOException e){
+			//an unreadable image is rebuilt like a missing one
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the image of a text file. The image is written to a temporary file first, then renamed, so that a
+	 * concurrent reader never sees a partial image.
+	 * @param source the text file
+	 * @throws IOException if the image cannot be written
+	 */
+	public void write(Path source) throws IOException {
+		int n=coordinates.length;
+		int k=candidates==null ? 0 : candidates.getK();
+		ByteBuffer buffer=ByteBuffer.allocate(Math.toIntExact(HEADER+16L*n+4L*n*k));
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putLong(Files.size(source)).putLong(Files.getLastModifiedTime(source).toMillis());
+		buffer.putInt(n).putInt(k).putLong(0);
+		for(double[] node:coordinates){
+			buffer.putDouble(node[0]).putDouble(node[1]);
+		}
+		for(int i=0; i<n; i++){
+			for(int r=0; r<k; r++){
+				buffer.putInt(candidates.get(i, r));
+			}
+		}
+		buffer.position(HEADER);
+		buffer.putLong(32, checksum(buffer));
+		buffer.position(0);
+
+		Path image=getImagePath(source);
+		//one temporary file per process, in the same directory so that the rename stays atomic
+		Path temporary=image.resolveSibling(image.getFileName()+"."+ProcessHandle.current().pid()+".tmp");
+		try{
+			try(FileChannel channel=FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.TRUNCATE_EXISTING)){
+				while(buffer.hasRemaining()){
+					channel.write(buffer);
+				}
+			}
+			try{
+				Files.move(temporary, image, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}catch(AtomicMoveNotSupportedException e){
+				Files.move(temporary, image, StandardCopyOption.REPLACE_EXISTING);
+			}
+		}finally{
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	//Computes the CRC32 of the bytes from the position of the buffer to its end
+	private static long checksum(ByteBuffer buffer){
+		CRC32 crc=new CRC32();
+		crc.update(buffer.duplicate());
+		return crc.getValue();
+	}
+
+}
@@ -0,0 +1,23 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Thrown when an instance file does not follow the TSPLIB format. The message gives the file and the line of the
+ * error.
+ * @version %I%, %G%
+ *
+ */
+public class InstanceFormatException extends IllegalArgumentException {
+
+	private static final long serialVersionUID=1L;
+
+	/**
+	 * Builds the exception
+	 * @param file the name of the file
+	 * @param line the line of the error, starting at 1
+	 * @param message the description of the error
+	 */
+	public InstanceFormatException(String file, int line, String message) {
+		super(file+":"+line+": "+message);
+	}
+
+}
@@ -1,9 +1,10 @@
 package polytech.tours.di.parallel.tsp;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
 
 /**
  * Implements an instance reader for TSPLIB files. Implements the builder design pattern.
@@ -13,25 +14,143 @@ import java.io.IOException;
  */
 public class InstanceReader {
 
-	//The file holding the instance data
-	private BufferedReader reader;
 	//The instance being built
 	private Instance i=null;
+	/**
+	 * Default number of nodes above which the distances are computed on demand
+	 */
+	public static final int DEFAULT_LAZY_THRESHOLD=10_000;
+	/**
+	 * Default number of rows cached by on-demand distance matrices, none since computing a distance is cheaper than
+	 * reading it from a large row
+	 */
+	public static final int DEFAULT_CACHED_ROWS=0;
+	//Number of nodes above which the distances are computed on demand
+	private int lazyThreshold=DEFAULT_LAZY_THRESHOLD;
+	//Number of rows cached by on-demand distance matrices
+	private int cachedRows=DEFAULT_CACHED_ROWS;
+	//The distance matrix backend, null to choose it from the threshold
+	private String matrixType=null;
+	/**
+	 * Default number of candidates stored in the binary images of the instances
+	 */
+	public static final int DEFAULT_CACHED_CANDIDATES=16;
+	//Whether the binary image of the instance is read, and written when missing
+	private boolean isCached=true;
+	//Number of candidates stored in the binary images
+	private int cachedCandidates=DEFAULT_CACHED_CANDIDATES;
+	/**
+	 * Reads the optional loading settings from the algorithm's configuration: <code>lazythreshold</code> (the number
+	 * of nodes above which the distances are computed on demand from the coordinates), <code>cachedrows</code>
+	 * (the number of hot rows kept in memory in that mode), <code>matrix</code> (the distance matrix backend, see
+	 * {@link #setMatrixType(String)}), <code>cache</code> (whether the binary image of the instance is used, see
+	 * {@link InstanceCache}) and <code>cachecandidates</code> (the number of candidates stored in the images).
+	 * @param config the algorithm's configuration
+	 */
+	public void configure(Properties config) {
+		if(config.getProperty("matrix")!=null)
+			setMatrixType(config.getProperty("matrix"));
+		if(config.getProperty("lazythreshold")!=null)
+			setLazyThreshold(Integer.parseInt(config.getProperty("lazythreshold")));
+		if(config.getProperty("cachedrows")!=null)
+			setCachedRows(Integer.parseInt(config.getProperty("cachedrows")));
+		if(config.getProperty("cache")!=null)
+			setCached(Boolean.parseBoolean(config.getProperty("cache")));
+		if(config.getProperty("cachecandidates")!=null)
+			setCachedCandidates(Integer.parseInt(config.getProperty("cachecandidates")));
+	}
+	/**
+	 * Sets the number of nodes above which the instance does not store a full distance matrix
+	 * @param lazyThreshold the threshold, in number of nodes
+	 */
+	public void setLazyThreshold(int lazyThreshold) {
+		this.lazyThreshold=lazyThreshold;
+	}
+	/**
+	 * Sets the distance matrix backend of the built instances:
+	 * <ul>
+	 * <li><code>dense</code>: a full <code>double[][]</code> matrix ({@link DenseDistanceMatrix})</li>
+	 * <li><code>float</code>: a row-major <code>float[]</code> matrix ({@link FloatDistanceMatrix})</li>
+	 * <li><code>int</code>: a row-major <code>int[]</code> matrix of TSPLIB rounded distances ({@link RoundedDistanceMatrix})</li>
+	 * <li><code>triangular</code>: a packed upper triangle ({@link TriangularDistanceMatrix})</li>
+	 * <li><code>offheap</code>: a packed upper triangle of floats outside the heap ({@link OffHeapDistanceMatrix})</li>
+	 * <li><code>lazy</code>: distances computed on demand from the coordinates ({@link LazyDistanceMatrix})</li>
+	 * </ul>
+	 * @param matrixType the backend, <code>null</code> or <code>auto</code> for <code>dense</code> up to the lazy
+	 * threshold and <code>lazy</code> above it
+	 */
+	public void setMatrixType(String matrixType) {
+		if(matrixType!=null && matrixType.equalsIgnoreCase("auto"))
+			matrixType=null;
+		this.matrixType=matrixType==null ? null : matrixType.toLowerCase();
+	}
+	/**
+	 * Sets the number of hot rows cached when the distances are computed on demand
+	 * @param cachedRows the number of rows, 0 to disable the cache
+	 */
+	public void setCachedRows(int cachedRows) {
+		this.cachedRows=cachedRows;
+	}
+	/**
+	 * Sets whether the instances are loaded from their binary image ({@link InstanceCache}), the image being
+	 * written on the first load of each file
+	 * @param isCached <code>true</code> to use the images (the default)
+	 */
+	public void setCached(boolean isCached) {
+		this.isCached=isCached;
+	}
+	/**
+	 * Sets the number of candidates of each node stored in the binary images
+	 * @param cachedCandidates the number of candidates, 0 to store only the coordinates
+	 */
+	public void setCachedCandidates(int cachedCandidates) {
+		this.cachedCandidates=cachedCandidates;
+	}
 	/**
 	 * Directs the instance construction
 	 * @param inputFile the name of the file (path included) to read
+	 * @throws UncheckedIOException if the file cannot be read
+	 * @throws InstanceFormatException if the file is not a valid TSPLIB file
 	 */
 	public void buildInstance(String inputFile) {
-		//set up the buffered reader
+		Path path=Paths.get(inputFile);
+		//read coordinates from the binary image, or else from the file
+		double[][] coordinates;
+		InstanceCache image=null;
 		try {
-			setBR(inputFile);
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
+			if(isCached)
+				image=InstanceCache.read(path);
+			coordinates=image!=null ? image.getCoordinates() : TSPLIBParser.parse(path);
+		} catch (IOException e) {
+			throw new UncheckedIOException("cannot read "+inputFile, e);
 		}
-		//read coordinates from the file
-		double[][] coordinates=readCoordinates();
 		//build instance
-		i=new Instance(EuclideanCalculator.calc(coordinates));
+		i=new Instance(coordinates, buildDistances(coordinates));
+		//an image lacking candidates is rewritten with them
+		int k=Math.min(cachedCandidates, coordinates.length-1);
+		CandidateLists candidates=image!=null ? image.getCandidates() : null;
+		if(candidates!=null)
+			i.setCandidateLists(candidates);
+		if(isCached && (image==null || (k>0 && (candidates==null || candidates.getK()<k))))
+			writeImage(path, coordinates, k);
+	}
+	
+	/**
+	 * Directs the construction of an instance whose coordinates were read elsewhere, for instance received from the
+	 * coordinator of a distributed run. No binary image is involved.
+	 * @param coordinates the node coordinates, not copied
+	 */
+	public void buildInstance(double[][] coordinates) {
+		i=new Instance(coordinates, buildDistances(coordinates));
+	}
+
+	//Writes the binary image of the instance, a failure only costs a parsing to the next load
+	private void writeImage(Path path, double[][] coordinates, int k){
+		try {
+			new InstanceCache(coordinates, k>0 ? i.getCandidateLists(k) : null).write(path);
+		} catch (IOException e) {
+			System.err.println("cannot write the image of "+path+": "+e);
+		}
 	}
 	/**
 	 * 
@@ -42,46 +161,28 @@ public class InstanceReader {
 		return i;
 	}
 	
-	//Instantiates the buffered reader
-	private void setBR(String fileName) throws FileNotFoundException{
-		reader = new BufferedReader(new FileReader(fileName));
-	}
-	//Reads the coordinates
-	private double[][] readCoordinates(){
-		boolean readingHeader = true;
-		boolean readingCoordinates = false;
-		int i=0, dimension;
-		double[][] coordinates=null;
-		String headerName;
-		String headerValue;
-		String[] items;
-		try{
-			String line = reader.readLine().trim();
-			while (!line.isEmpty() && !line.equals("EOF")){
-				if (readingHeader){
-					items= line.split(":");
-					headerName = items[0].trim().toUpperCase();
-					headerValue = items.length > 1 ? items[1].trim() : "";
-					if (headerName.equals("DIMENSION")){
-						dimension = Integer.parseInt(headerValue);
-						coordinates=new double[dimension][2];
-					}
-					if (headerName.equals("NODE_COORD_SECTION")){
-						readingHeader = false;
-						readingCoordinates = true;
-					}
-				} else if (readingCoordinates) {
-					items = line.split("(\\s)+");
-					coordinates[i][0]= Double.parseDouble(items[1]);
-					coordinates[i][1]= Double.parseDouble(items[2]);
-					i++;
-				}
-				line = reader.readLine().trim();
-			}
-		}catch(IOException e){
-			e.printStackTrace();
+	//Builds the distance matrix backend
+	private DistanceMatrix buildDistances(double[][] coordinates){
+		String type=matrixType;
+		//the full matrix is only affordable up to the threshold
+		if(type==null)
+			type=coordinates.length>lazyThreshold ? "lazy" : "dense";
+		switch(type){
+		case "dense":
+			return new DenseDistanceMatrix(EuclideanCalculator.calc(coordinates));
+		case "float":
+			return new FloatDistanceMatrix(coordinates);
+		case "int":
+			return new RoundedDistanceMatrix(coordinates);
+		case "triangular":
+			return new TriangularDistanceMatrix(coordinates);
+		case "offheap":
+			return new OffHeapDistanceMatrix(coordinates);
+		case "lazy":
+			return new LazyDistanceMatrix(coordinates, cachedRows);
+		default:
+			throw new IllegalArgumentException("unknown distance matrix backend: "+matrixType);
 		}
-		return coordinates;
 	}
 
 }
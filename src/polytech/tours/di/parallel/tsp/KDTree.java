@@ -0,0 +1,490 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Implements a static 2-d tree over the coordinates of an instance, used to answer nearest neighbor queries in
+ * O(log n) on average.
+ * <p>
+ * The tree is implicit: the nodes are stored in a permutation array in which the median of every range
+ * <code>[lo, hi)</code> sits at <code>(lo+hi)/2</code>, the nodes before it being on the low side of its splitting
+ * axis and the nodes after it on the high side. The construction runs in O(n log n) and its largest ranges are
+ * split in parallel. Once built, the tree is immutable and can be queried concurrently, each thread using its own
+ * {@link Query}.
+ * @version %I%, %G%
+ *
+ */
+public class KDTree {
+	/**
+	 * Ranges smaller than this are built sequentially
+	 */
+	private static final int PARALLEL_THRESHOLD=8_192;
+	/**
+	 * The coordinates on the x axis
+	 */
+	private final double[] x;
+	/**
+	 * The coordinates on the y axis
+	 */
+	private final double[] y;
+	/**
+	 * The nodes, in tree order
+	 */
+	private final int[] tree;
+	/**
+	 * The splitting axis of the median of each range (0 for x, 1 for y)
+	 */
+	private final byte[] axis;
+	/**
+	 * The position of each node in {@link #tree}
+	 */
+	private final int[] slots;
+
+	/**
+	 * Builds the tree over all the nodes of an instance
+	 * @param instance the instance, with coordinates
+	 */
+	public KDTree(Instance instance){
+		if(!instance.hasCoordinates())
+			throw new IllegalArgumentException("the instance has no coordinates");
+		int n=instance.getN();
+		this.x=new double[n];
+		this.y=new double[n];
+		this.tree=new int[n];
+		this.axis=new byte[n];
+		this.slots=new int[n];
+		for(int i=0; i<n; i++){
+			x[i]=instance.getX(i);
+			y[i]=instance.getY(i);
+			tree[i]=i;
+		}
+		if(n>PARALLEL_THRESHOLD)
+			ForkJoinPool.commonPool().invoke(new Build(0, n));
+		else
+			build(0, n);
+		for(int i=0; i<n; i++){
+			slots[tree[i]]=i;
+		}
+	}
+
+	/**
+	 * 
+	 * @return the number of nodes in the tree
+	 */
+	public int size(){
+		return tree.length;
+	}
+
+	/**
+	 * Creates a reusable query buffer for this tree
+	 * @param k the maximum number of neighbors returned by a query
+	 * @return a new query, to be used by a single thread
+	 */
+	public Query newQuery(int k){
+		return new Query(k);
+	}
+
+	/**
+	 * Creates a nearest neighbor search over a set of nodes from which nodes can be removed, such as the cities not
+	 * visited yet by a tour under construction
+	 * @return a new search holding all the nodes, to be used by a single thread
+	 */
+	public Remaining newRemaining(){
+		return new Remaining();
+	}
+
+	//Sequentially builds the range [lo, hi)
+	private void build(int lo, int hi){
+		while(hi-lo>1){
+			int mid=split(lo, hi);
+			build(lo, mid);
+			lo=mid+1;
+		}
+	}
+
+	//Places the median of the range on its widest axis at the middle of the range, returns the middle
+	private int split(int lo, int hi){
+		double minX=Double.POSITIVE_INFINITY, maxX=Double.NEGATIVE_INFINITY;
+		double minY=Double.POSITIVE_INFINITY, maxY=Double.NEGATIVE_INFINITY;
+		for(int i=lo; i<hi; i++){
+			int node=tree[i];
+			minX=Math.min(minX, x[node]);
+			maxX=Math.max(maxX, x[node]);
+			minY=Math.min(minY, y[node]);
+			maxY=Math.max(maxY, y[node]);
+		}
+		double[] values=maxX-minX>=maxY-minY ? x : y;
+		int mid=(lo+hi)>>>1;
+		select(values, lo, hi-1, mid);
+		axis[mid]=(byte)(values==x ? 0 : 1);
+		return mid;
+	}
+
+	//Quickselect: reorders tree[left..right] so that tree[k] holds the node of rank k
+	private void select(double[] values, int left, int right, int k){
+		while(right>left){
+			int middle=(left+right)>>>1;
+			//median of three pivot
+			if(values[tree[middle]]<values[tree[left]]) swap(middle, left);
+			if(values[tree[right]]<values[tree[left]]) swap(right, left);
+			if(values[tree[right]]<values[tree[middle]]) swap(right, middle);
+			double pivot=values[tree[middle]];
+			int i=left, j=right;
+			while(i<=j){
+				while(values[tree[i]]<pivot) i++;
+				while(values[tree[j]]>pivot) j--;
+				if(i<=j){
+					swap(i, j);
+					i++;
+					j--;
+				}
+			}
+			if(k<=j)
+				right=j;
+			else if(k>=i)
+				left=i;
+			else
+				return;
+		}
+	}
+
+	private void swap(int i, int j){
+		int t=tree[i];
+		tree[i]=tree[j];
+		tree[j]=t;
+	}
+
+	//Builds the range [lo, hi), forking the two halves of large ranges
+	private class Build extends RecursiveAction{
+		private static final long serialVersionUID = 1L;
+		private final int lo, hi;
+
+		Build(int lo, int hi){
+			this.lo=lo;
+			this.hi=hi;
+		}
+
+		@Override
+		protected void compute() {
+			if(hi-lo<=PARALLEL_THRESHOLD){
+				build(lo, hi);
+				return;
+			}
+			int mid=split(lo, hi);
+			invokeAll(new Build(lo, mid), new Build(mid+1, hi));
+		}
+	}
+
+	/**
+	 * A k-nearest neighbors query. The results are kept in preallocated arrays, so a query object can be reused
+	 * for any number of searches without allocation. Not thread-safe.
+	 */
+	public class Query{
+		/**
+		 * The maximum number of neighbors
+		 */
+		private final int k;
+		/**
+		 * The neighbors found, as a max-heap on the distance while searching
+		 */
+		private final int[] nodes;
+		/**
+		 * The squared distances of the neighbors found
+		 */
+		private final double[] distances;
+		/**
+		 * The number of neighbors found
+		 */
+		private int count;
+		//The query point and the node excluded from the results
+		private double qx, qy;
+		private int excluded;
+
+		Query(int k){
+			if(k<=0)
+				throw new IllegalArgumentException("argument k must be positive");
+			this.k=k;
+			this.nodes=new int[k];
+			this.distances=new double[k];
+		}
+
+		/**
+		 * Searches the nodes closest to a node of the tree, the node itself excluded. The neighbors are then
+		 * available, closest first, through {@link #getNode(int)}.
+		 * @param node the node
+		 * @return the number of neighbors found, <code>min(k, n-1)</code>
+		 */
+		public int search(int node){
+			return search(x[node], y[node], node);
+		}
+
+		/**
+		 * Searches the nodes closest to a point. The neighbors are then available, closest first, through
+		 * {@link #getNode(int)}.
+		 * @param px the coordinate on the x axis of the point
+		 * @param py the coordinate on the y axis of the point
+		 * @param excluded a node to leave out of the results, -1 for none
+		 * @return the number of neighbors found
+		 */
+		public int search(double px, double py, int excluded){
+			this.qx=px;
+			this.qy=py;
+			this.excluded=excluded;
+			this.count=0;
+			search(0, tree.length);
+			//heap sort, the closest first
+			for(int end=count-1; end>0; end--){
+				swap(0, end);
+				siftDown(0, end);
+			}
+			return count;
+		}
+
+		/**
+		 * 
+		 * @param rank the rank of the neighbor, 0 for the closest
+		 * @return the neighbor of the given rank found by the last search
+		 */
+		public int getNode(int rank){
+			return nodes[rank];
+		}
+
+		/**
+		 * 
+		 * @param rank the rank of the neighbor, 0 for the closest
+		 * @return the squared Euclidean distance to the neighbor of the given rank
+		 */
+		public double getSquaredDistance(int rank){
+			return distances[rank];
+		}
+
+		private void search(int lo, int hi){
+			while(lo<hi){
+				int mid=(lo+hi)>>>1;
+				int node=tree[mid];
+				double dx=x[node]-qx, dy=y[node]-qy;
+				if(node!=excluded)
+					offer(node, dx*dx+dy*dy);
+				double diff=axis[mid]==0 ? qx-x[node] : qy-y[node];
+				//visit the side of the query point first, the other one only if it may hold closer nodes
+				if(diff<0){
+					search(lo, mid);
+					if(count==k && diff*diff>=distances[0])
+						return;
+					lo=mid+1;
+				}else{
+					search(mid+1, hi);
+					if(count==k && diff*diff>=distances[0])
+						return;
+					hi=mid;
+				}
+			}
+		}
+
+		private void offer(int node, double d){
+			if(count<k){
+				//sift up
+				int i=count++;
+				while(i>0){
+					int parent=(i-1)>>>1;
+					if(distances[parent]>=d) break;
+					nodes[i]=nodes[parent];
+					distances[i]=distances[parent];
+					i=parent;
+				}
+				nodes[i]=node;
+				distances[i]=d;
+			}else if(d<distances[0]){
+				nodes[0]=node;
+				distances[0]=d;
+				siftDown(0, count);
+			}
+		}
+
+		private void siftDown(int i, int size){
+			int node=nodes[i];
+			double d=distances[i];
+			while(true){
+				int child=2*i+1;
+				if(child>=size) break;
+				if(child+1<size && distances[child+1]>distances[child]) child++;
+				if(distances[child]<=d) break;
+				nodes[i]=nodes[child];
+				distances[i]=distances[child];
+				i=child;
+			}
+			nodes[i]=node;
+			distances[i]=d;
+		}
+
+		private void swap(int i, int j){
+			int tn=nodes[i];
+			nodes[i]=nodes[j];
+			nodes[j]=tn;
+			double td=distances[i];
+			distances[i]=distances[j];
+			distances[j]=td;
+		}
+	}
+
+	/**
+	 * A nearest neighbor search restricted to the nodes not removed yet. Every range of the tree counts its
+	 * remaining nodes, so that emptied ranges are skipped: removing a node costs O(log n) and a query stays
+	 * logarithmic on average whatever the count of removed nodes. Not thread-safe.
+	 */
+	public class Remaining{
+		/**
+		 * The count of remaining nodes of each range, stored at the position of its median
+		 */
+		private final int[] counts;
+		/**
+		 * Flags the removed nodes, indexed by position in the tree
+		 */
+		private final boolean[] removed;
+		//The best node found by the current query
+		private int best;
+		private double bestDistance;
+		private double qx, qy;
+
+		Remaining(){
+			this.counts=new int[tree.length];
+			this.removed=new boolean[tree.length];
+			reset();
+		}
+
+		/**
+		 * Puts back all the nodes, in O(n)
+		 */
+		public void reset(){
+			Arrays.fill(removed, false);
+			count(0, tree.length);
+		}
+
+		private int count(int lo, int hi){
+			if(lo>=hi)
+				return 0;
+			int mid=(lo+hi)>>>1;
+			counts[mid]=hi-lo;
+			count(lo, mid);
+			count(mid+1, hi);
+			return hi-lo;
+		}
+
+		/**
+		 * 
+		 * @return the number of remaining nodes
+		 */
+		public int size(){
+			return tree.length==0 ? 0 : counts[tree.length>>>1];
+		}
+
+		/**
+		 * 
+		 * @param node the node
+		 * @return <code>true</code> if the node has not been removed
+		 */
+		public boolean contains(int node){
+			return !removed[slots[node]];
+		}
+
+		/**
+		 * Removes a node, nothing happens if it was already removed
+		 * @param node the node to remove
+		 */
+		public void remove(int node){
+			int slot=slots[node];
+			if(removed[slot])
+				return;
+			removed[slot]=true;
+			int lo=0, hi=tree.length;
+			while(true){
+				int mid=(lo+hi)>>>1;
+				counts[mid]--;
+				if(slot==mid)
+					return;
+				if(slot<mid)
+					hi=mid;
+				else
+					lo=mid+1;
+			}
+		}
+
+		/**
+		 * Finds the remaining node closest to a point
+		 * @param px the coordinate on the x axis of the point
+		 * @param py the coordinate on the y axis of the point
+		 * @return the closest remaining node, -1 if none remains
+		 */
+		public int nearest(double px, double py){
+			this.qx=px;
+			this.qy=py;
+			this.best=-1;
+			this.bestDistance=Double.POSITIVE_INFINITY;
+			search(0, tree.length);
+			return best;
+		}
+
+		/**
+		 * Finds the remaining node closest to a node
+		 * @param node the node, usually already removed
+		 * @return the closest remaining node (other than <code>node</code>), -1 if none remains
+		 */
+		public int nearest(int node){
+			boolean wasRemoved=removed[slots[node]];
+			remove(node);
+			int nearest=nearest(x[node], y[node]);
+			if(!wasRemoved)
+				restore(node);
+			return nearest;
+		}
+
+		//Puts back a removed node
+		private void restore(int node){
+			int slot=slots[node];
+			removed[slot]=false;
+			int lo=0, hi=tree.length;
+			while(true){
+				int mid=(lo+hi)>>>1;
+				counts[mid]++;
+				if(slot==mid)
+					return;
+				if(slot<mid)
+					hi=mid;
+				else
+					lo=mid+1;
+			}
+		}
+
+		private void search(int lo, int hi){
+			while(lo<hi){
+				int mid=(lo+hi)>>>1;
+				if(counts[mid]==0)
+					return;
+				int node=tree[mid];
+				if(!removed[mid]){
+					double dx=x[node]-qx, dy=y[node]-qy;
+					double d=dx*dx+dy*dy;
+					if(d<bestDistance){
+						best=node;
+						bestDistance=d;
+					}
+				}
+				double diff=axis[mid]==0 ? qx-x[node] : qy-y[node];
+				if(diff<0){
+					search(lo, mid);
+					if(diff*diff>=bestDistance)
+						return;
+					lo=mid+1;
+				}else{
+					search(mid+1, hi);
+					if(diff*diff>=bestDistance)
+						return;
+					hi=mid;
+				}
+			}
+		}
+	}
+
+}
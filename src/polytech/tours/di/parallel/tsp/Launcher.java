@@ -14,7 +14,8 @@ public class Launcher {
 	
 	/**
 	 * 
-	 * @param args[0] the file (path included) with he configuration settings
+	 * @param args[0] the file (path included) with he configuration settings, optionally followed by
+	 * <code>-resume checkpoint</code> to go on from the checkpoint of an interrupted run (key <code>resume</code>)
 	 */
 	public static void main(String[] args) {
 		//read properties
@@ -24,6 +25,13 @@ public class Launcher {
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
+		for(int a=1; a<args.length; a++){
+			if(!args[a].equals("-resume"))
+				throw new IllegalArgumentException("unknown option: "+args[a]);
+			if(a+1==args.length)
+				throw new IllegalArgumentException("missing checkpoint file after -resume");
+			config.setProperty("resume", args[++a]);
+		}
 		
 		//dynamically load the algorithm class
 		Algorithm algorithm=null;;
@@ -33,6 +41,9 @@ public class Launcher {
 		} catch (ClassNotFoundException | InstantiationException | IllegalAccessException e){
 			e.printStackTrace();
 		}
+		//only some algorithms go on from a checkpoint, the others would silently start over
+		if(config.getProperty("resume")!=null && !(algorithm instanceof ResumableAlgorithm))
+			throw new IllegalArgumentException(config.getProperty("algorithm")+" cannot resume from a checkpoint");
 		
 		//run algorithm
 		Solution s=algorithm.run(config);
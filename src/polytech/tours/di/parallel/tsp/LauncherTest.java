@@ -52,5 +52,17 @@ public class LauncherTest {
 
 			System.out.println("Instance: " + data + "\tThreads: " + i + "\tavg:" + avg);
 		}
+		
+		//The count tuned by the algorithm itself, to compare with the sweep
+		config.setProperty("maxthreads", "auto");
+		long avg = 0;
+		String chosen = "";
+		for(int j = 0; j < countTests; j++) {
+			Solution s = algorithm.run(config);
+			avg += s.getOF();
+			chosen += " " + s.getThreads();
+		}
+		avg /= countTests;
+		System.out.println("Instance: " + data + "\tThreads: auto (" + chosen.trim() + ")\tavg:" + avg);
 	}
 }
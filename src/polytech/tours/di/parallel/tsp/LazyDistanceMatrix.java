@@ -0,0 +1,141 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Computes the distances on demand from the node coordinates, so memory grows in O(n) instead of O(n&sup2;).
+ * <p>
+ * Rows that are queried often can be materialized in a bounded, direct-mapped cache shared by the threads, stored
+ * in slot <code>i % cachedRows</code>. A cache hit only reads the slot. The admission of a row is decided on a miss
+ * with counters private to the calling thread: the node must have been looked up {@link #HOT_ROW_THRESHOLD} times
+ * in the thread's last n misses, and a thread builds at most one row, that is n distances, every n misses. Building
+ * rows therefore never costs more than one distance per miss, whatever the access pattern: uniform lookups over a
+ * large instance admit nothing, while the repeated lookups around the nodes a local search is working on do.
+ * The slots are replaced without locks; a lost update only costs a cache miss since a cached row is immutable and
+ * carries its own node index.
+ * <p>
+ * Computing a Euclidean distance is cheaper than a cache miss in a large row, so the cache is disabled by default
+ * ({@link InstanceReader#DEFAULT_CACHED_ROWS}).
+ * @version %I%, %G%
+ *
+ */
+public class LazyDistanceMatrix implements DistanceMatrix {
+	/**
+	 * Number of lookups of a node, within the last n misses of a thread, after which its row gets cached
+	 */
+	public static final int HOT_ROW_THRESHOLD=64;
+	/**
+	 * The coordinates on the x axis
+	 */
+	private final double[] x;
+	/**
+	 * The coordinates on the y axis
+	 */
+	private final double[] y;
+	/**
+	 * The cache slots, <code>null</code> when the cache is disabled
+	 */
+	private final CachedRow[] cache;
+	/**
+	 * The admission counters of each thread, <code>null</code> when the cache is disabled
+	 */
+	private final ThreadLocal<Admission> admission;
+
+	/**
+	 * Builds a lazy matrix
+	 * @param coordinates the coordinates matrix (one row per node, two columns)
+	 * @param cachedRows the maximum number of rows kept in memory, 0 to disable the cache
+	 */
+	public LazyDistanceMatrix(double[][] coordinates, int cachedRows) {
+		if(cachedRows<0)
+			throw new IllegalArgumentException("argument cachedRows must be positive or zero");
+		int n=coordinates.length;
+		this.x=new double[n];
+		this.y=new double[n];
+		for(int i=0; i<n; i++){
+			this.x[i]=coordinates[i][0];
+			this.y[i]=coordinates[i][1];
+		}
+		this.cache=cachedRows>0 ? new CachedRow[Math.min(cachedRows, n)] : null;
+		this.admission=cachedRows>0 ? ThreadLocal.withInitial(() -> new Admission(n)) : null;
+	}
+
+	@Override
+	public double getDistance(int i, int j) {
+		if(cache!=null){
+			CachedRow row=cache[i % cache.length];
+			if(row!=null && row.node==i)
+				return row.distances[j];
+			if(admission.get().admit(i))
+				cache[i % cache.length]=new CachedRow(i, computeRow(i));
+		}
+		return EuclideanCalculator.calc(x[i], y[i], x[j], y[j]);
+	}
+
+	@Override
+	public int getN() {
+		return x.length;
+	}
+
+	/**
+	 * 
+	 * @return the number of rows the cache can hold
+	 */
+	public int getCachedRows() {
+		return cache==null ? 0 : cache.length;
+	}
+
+	//Computes all the distances from node i
+	private double[] computeRow(int i){
+		double[] row=new double[x.length];
+		for(int j=0; j<x.length; j++){
+			row[j]=EuclideanCalculator.calc(x[i], y[i], x[j], y[j]);
+		}
+		return row;
+	}
+
+	//The lookup counters of one thread, over windows of n misses
+	private static final class Admission{
+		//Lookups of each node in the window it was last counted in
+		final int[] hits;
+		//The window each counter belongs to
+		final int[] windows;
+		int window=1;
+		int misses=0;
+		//Whether a row was built in the current window
+		boolean isBuilt=false;
+
+		Admission(int n){
+			this.hits=new int[n];
+			this.windows=new int[n];
+		}
+
+		//Counts a miss of node i, true if its row should be built
+		boolean admit(int i){
+			if(++misses>=hits.length){
+				misses=0;
+				window++;
+				isBuilt=false;
+			}
+			if(windows[i]!=window){
+				windows[i]=window;
+				hits[i]=0;
+			}
+			if(++hits[i]<HOT_ROW_THRESHOLD || isBuilt)
+				return false;
+			hits[i]=0;
+			isBuilt=true;
+			return true;
+		}
+	}
+
+	//An immutable cached row
+	private static final class CachedRow{
+		final int node;
+		final double[] distances;
+
+		CachedRow(int node, double[] distances){
+			this.node=node;
+			this.distances=distances;
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Stores the packed upper triangle of the distance matrix as floats in direct (off-heap) buffers. The matrix does
+ * not count against the Java heap nor slow down the garbage collector, which makes it the backend of choice for
+ * instances whose matrix exceeds the heap budget. The memory is reserved with
+ * <code>-XX:MaxDirectMemorySize</code>.
+ * <p>
+ * A single buffer cannot exceed 2 GB, so the triangle is split in chunks of {@link #CHUNK_SIZE} distances.
+ * @version %I%, %G%
+ *
+ */
+public class OffHeapDistanceMatrix implements DistanceMatrix {
+	/**
+	 * Log2 of the number of distances stored per buffer
+	 */
+	private static final int CHUNK_BITS=28;
+	/**
+	 * Number of distances stored per buffer
+	 */
+	public static final int CHUNK_SIZE=1<<CHUNK_BITS;
+	/**
+	 * The number of nodes
+	 */
+	private final int n;
+	/**
+	 * The buffers holding the distances d(i,j) for i&lt;j
+	 */
+	private final ByteBuffer[] chunks;
+
+	/**
+	 * Builds the matrix from a coordinates matrix
+	 * @param coordinates the coordinates matrix (one row per node, two columns)
+	 */
+	public OffHeapDistanceMatrix(double[][] coordinates) {
+		this.n=coordinates.length;
+		long size=(long)n*(n-1)/2;
+		int count=(int)((size+CHUNK_SIZE-1)>>>CHUNK_BITS);
+		this.chunks=new ByteBuffer[count];
+		for(int c=0; c<count; c++){
+			long length=Math.min(CHUNK_SIZE, size-((long)c<<CHUNK_BITS));
+			chunks[c]=ByteBuffer.allocateDirect((int)length*Float.BYTES).order(ByteOrder.nativeOrder());
+		}
+		long k=0;
+		for(int i=0; i<n; i++){
+			for(int j=i+1; j<n; j++){
+				float d=(float)EuclideanCalculator.calc(coordinates[i][0],coordinates[i][1],coordinates[j][0],coordinates[j][1]);
+				chunks[(int)(k>>>CHUNK_BITS)].putFloat((int)(k&(CHUNK_SIZE-1))*Float.BYTES, d);
+				k++;
+			}
+		}
+	}
+
+	@Override
+	public double getDistance(int i, int j) {
+		long k;
+		if(i<j)
+			k=TriangularDistanceMatrix.index(n, i, j);
+		else if(j<i)
+			k=TriangularDistanceMatrix.index(n, j, i);
+		else
+			return 0;
+		return chunks[(int)(k>>>CHUNK_BITS)].getFloat((int)(k&(CHUNK_SIZE-1))*Float.BYTES);
+	}
+
+	@Override
+	public int getN() {
+		return n;
+	}
+
+}
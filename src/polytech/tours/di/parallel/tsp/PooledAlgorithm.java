@@ -0,0 +1,24 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Defines the interface to the algorithms able to run on resources shared with other runs: threads created once for
+ * many runs, besides the instances loaded once for all the runs on the same file ({@link SharedInstanceAlgorithm}).
+ * Both are optional: an algorithm that is given nothing creates its own threads and reads its own instance, like any
+ * {@link Algorithm}.
+ * @version %I%, %G%
+ *
+ */
+public interface PooledAlgorithm extends SharedInstanceAlgorithm {
+
+	/**
+	 * Sets the threads of the next runs. The algorithm must not shut them down: it stops its own tasks by cancelling
+	 * their futures.
+	 * @param workers the pool running the computing tasks, with a free thread for each of them
+	 * @param scheduler the pool running the timeouts and the other short periodic tasks
+	 */
+	public void setExecutors(ExecutorService workers, ScheduledExecutorService scheduler);
+
+}
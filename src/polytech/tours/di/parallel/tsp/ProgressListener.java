@@ -0,0 +1,18 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Receives the improvements of the best solution of an {@link AnytimeAlgorithm} while it runs.
+ * @version %I%, %G%
+ *
+ */
+public interface ProgressListener {
+
+	/**
+	 * Called each time the best solution improves, with decreasing objective functions. The calls come from the
+	 * threads of the algorithm, one at a time: the method must return quickly.
+	 * @param solution the new best solution, which must not be modified
+	 * @param elapsedSeconds the time since the beginning of the search
+	 */
+	public void improved(Solution solution, double elapsedSeconds);
+
+}
@@ -0,0 +1,13 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Marks the algorithms able to go on from the checkpoint of an interrupted run. They read it from the
+ * <code>resume</code> key of their configuration (<code>Launcher config.xml -resume file</code>), start from its tour
+ * and only get the time the interrupted run had left; the other algorithms would ignore the key, so the
+ * {@link Launcher} refuses it for them.
+ * @version %I%, %G%
+ *
+ */
+public interface ResumableAlgorithm extends Algorithm {
+
+}
@@ -0,0 +1,57 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Stores the full distance matrix in a single row-major <code>int[]</code> holding the TSPLIB EUC_2D distances,
+ * i.e. the Euclidean distances rounded to the nearest integer. Tour costs computed with this matrix are the ones
+ * reported by TSPLIB and the World TSP pages.
+ * @version %I%, %G%
+ *
+ */
+public class RoundedDistanceMatrix implements DistanceMatrix {
+	/**
+	 * The number of nodes
+	 */
+	private final int n;
+	/**
+	 * The rounded distances, row after row
+	 */
+	private final int[] matrix;
+
+	/**
+	 * Builds the matrix from a coordinates matrix
+	 * @param coordinates the coordinates matrix (one row per node, two columns)
+	 */
+	public RoundedDistanceMatrix(double[][] coordinates) {
+		this.n=coordinates.length;
+		if((long)n*n>Integer.MAX_VALUE)
+			throw new IllegalArgumentException("too many nodes for a single array: "+n);
+		this.matrix=new int[n*n];
+		for(int i=0; i<n; i++){
+			for(int j=i+1; j<n; j++){
+				int d=nint(EuclideanCalculator.calc(coordinates[i][0],coordinates[i][1],coordinates[j][0],coordinates[j][1]));
+				matrix[i*n+j]=d;
+				matrix[j*n+i]=d;
+			}
+		}
+	}
+
+	/**
+	 * Rounds a distance the way TSPLIB does for EUC_2D instances
+	 * @param d the Euclidean distance
+	 * @return the nearest integer
+	 */
+	public static int nint(double d){
+		return (int)(d+0.5);
+	}
+
+	@Override
+	public double getDistance(int i, int j) {
+		return matrix[i*n+j];
+	}
+
+	@Override
+	public int getN() {
+		return n;
+	}
+
+}
@@ -0,0 +1,18 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Defines the interface to the algorithms able to run on an instance loaded once for all the runs on the same file,
+ * for instance by the jobs of a {@link BatchRunner}. An algorithm that is given no instance reads its own, like any
+ * {@link Algorithm}.
+ * @version %I%, %G%
+ *
+ */
+public interface SharedInstanceAlgorithm extends Algorithm {
+
+	/**
+	 * Sets the instance of the next runs, which then ignore the <code>instance</code> key of their configuration
+	 * @param instance the instance, <code>null</code> to read it from the configuration again
+	 */
+	public void setInstance(Instance instance);
+
+}
@@ -26,14 +26,20 @@ public class Solution extends ArrayList<Integer> implements Cloneable{
 	 */
 	protected double of=Double.NaN;
 	
+	/**
+	 * A lower bound on the objective function of the optimal solution, NaN if unknown
+	 */
+	protected double lowerBound=Double.NaN;
+	
+	/**
+	 * The number of threads chosen by the algorithm to compute the solution, 0 if not reported
+	 */
+	protected int threads=0;
+	
 	@Override
 	public Solution clone() {
-		Solution clone=new Solution();
-		clone.of=this.of;
-		for(Integer i:this){
-			clone.add(i);
-		}
-		return clone;
+		//the shallow copy of ArrayList copies the backing array at once and keeps the objective function
+		return (Solution)super.clone();
 	}
 
 	/**
@@ -52,10 +58,54 @@ public class Solution extends ArrayList<Integer> implements Cloneable{
 		this.of=of;		
 	}
 	
+	/**
+	 * 
+	 * @return a lower bound on the objective function of the optimal solution, NaN if unknown
+	 */
+	public double getLowerBound() {
+		return this.lowerBound;
+	}
+	
+	/**
+	 * Sets the lower bound on the objective function of the optimal solution
+	 * @param lowerBound the bound, NaN if unknown
+	 */
+	public void setLowerBound(double lowerBound) {
+		this.lowerBound=lowerBound;
+	}
+	
+	/**
+	 * 
+	 * @return the optimality gap of the solution, <code>(OF-LB)/LB</code>, NaN if the lower bound is unknown
+	 */
+	public double getGap() {
+		return (this.of-this.lowerBound)/this.lowerBound;
+	}
+	
+	/**
+	 * 
+	 * @return the number of threads chosen by the algorithm to compute the solution, 0 if not reported
+	 */
+	public int getThreads() {
+		return this.threads;
+	}
+	
+	/**
+	 * Sets the number of threads chosen by the algorithm to compute the solution
+	 * @param threads the number of threads, 0 if not reported
+	 */
+	public void setThreads(int threads) {
+		this.threads=threads;
+	}
+	
 	@Override
 	public String toString(){
 		String str=super.toString();
 		str=str.concat("\t OF="+this.of);
+		if(!Double.isNaN(this.lowerBound))
+			str=str.concat("\t LB="+this.lowerBound+"\t gap="+100*getGap()+"%");
+		if(this.threads>0)
+			str=str.concat("\t threads="+this.threads);
 		return str;
 	}
 	
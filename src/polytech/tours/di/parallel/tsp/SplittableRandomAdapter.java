@@ -0,0 +1,80 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Exposes a {@link SplittableRandom} stream through the {@link Random} API, so that the code taking a
+ * <code>Random</code> can draw from independent reproducible streams. Like {@link SplittableRandom}, and unlike
+ * {@link Random}, an adapter is not thread-safe and draws without any atomic operation: each thread must use its own
+ * stream, obtained by splitting a master one.
+ * @version %I%, %G%
+ *
+ */
+public class SplittableRandomAdapter extends Random {
+
+	private static final long serialVersionUID=1L;
+	/**
+	 * The stream
+	 */
+	private final SplittableRandom source;
+
+	/**
+	 * Builds an adapter
+	 * @param source the stream, owned by the adapter from now on
+	 */
+	public SplittableRandomAdapter(SplittableRandom source) {
+		this.source=source;
+	}
+
+	/**
+	 * Splits the stream of this adapter
+	 * @return an adapter over a new stream, independent from this one
+	 */
+	public SplittableRandomAdapter split(){
+		return new SplittableRandomAdapter(source.split());
+	}
+
+	/**
+	 * Not supported: a stream is defined at its creation
+	 * @param seed ignored
+	 * @throws UnsupportedOperationException always, except during the construction
+	 */
+	@Override
+	public void setSeed(long seed) {
+		//called by the constructor of Random, before source is set
+		if(source!=null)
+			throw new UnsupportedOperationException("the seed of a split stream cannot change");
+	}
+
+	@Override
+	protected int next(int bits) {
+		return source.nextInt()>>>(32-bits);
+	}
+
+	@Override
+	public int nextInt() {
+		return source.nextInt();
+	}
+
+	@Override
+	public int nextInt(int bound) {
+		return source.nextInt(bound);
+	}
+
+	@Override
+	public long nextLong() {
+		return source.nextLong();
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return source.nextBoolean();
+	}
+
+	@Override
+	public double nextDouble() {
+		return source.nextDouble();
+	}
+
+}
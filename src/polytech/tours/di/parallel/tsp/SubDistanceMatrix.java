@@ -0,0 +1,34 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * The distances between some nodes of another instance, read from that instance: the sub-instance stores nothing
+ * but the indexes of its nodes, and its distances are exactly those of its parent, whatever its backend.
+ * @version %I%, %G%
+ *
+ */
+class SubDistanceMatrix implements DistanceMatrix {
+	/**
+	 * The instance holding the distances
+	 */
+	private final Instance parent;
+	/**
+	 * Node i of this matrix is node <code>nodes[i]</code> of the parent
+	 */
+	private final int[] nodes;
+
+	SubDistanceMatrix(Instance parent, int[] nodes){
+		this.parent=parent;
+		this.nodes=nodes;
+	}
+
+	@Override
+	public double getDistance(int i, int j){
+		return parent.getDistance(nodes[i], nodes[j]);
+	}
+
+	@Override
+	public int getN(){
+		return nodes.length;
+	}
+
+}
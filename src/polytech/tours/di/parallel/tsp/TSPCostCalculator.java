@@ -1,18 +1,23 @@
 package polytech.tours.di.parallel.tsp;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Computes the cost of a TSP solution
+ * Computes the cost of a TSP solution.
+ *
+ * The calculator keeps no state: every method works on its arguments only and allocates nothing, so it can be
+ * called concurrently by any number of threads.
  * @author Jorge E. Mendoza (dev@jorge-mendoza.com)
  * @version %I%, %G%
  *
  */
 public class TSPCostCalculator{
-	
-	private static ArrayList<Integer> s;
-	private static double[][] distMatrix;
-	
+
+	/**
+	 * Default relative tolerance used when checking a cached objective function
+	 */
+	public static final double DEFAULT_TOLERANCE=1e-9;
+
 	/**
 	 * Computes the objective function of a TSP tour
 	 * @param instance the instance data
@@ -20,9 +25,28 @@ public class TSPCostCalculator{
 	 * @return the objective function of solution <code>s</code>
 	 */
 	public static double calcOF(Instance instance, Solution s){
-		distMatrix=instance.getDistanceMatrix();
-		TSPCostCalculator.s=s;
-		return calc();
+		//go through getDistance so that instances without a full matrix are never materialized
+		double cost=0;
+		for(int i=1;i<s.size();i++){
+			cost=cost+instance.getDistance(s.get(i-1),s.get(i));
+		}
+		cost=cost+instance.getDistance(s.get(s.size()-1),s.get(0));
+		return cost;
+	}
+	/**
+	 * Computes the objective function of a TSP tour
+	 * @param instance the instance data
+	 * @param tour the tour
+	 * @return the objective function of <code>tour</code>
+	 */
+	public static double calcOF(Instance instance, Tour tour){
+		int n=tour.size();
+		double cost=0;
+		for(int i=1;i<n;i++){
+			cost=cost+instance.getDistance(tour.getCity(i-1),tour.getCity(i));
+		}
+		cost=cost+instance.getDistance(tour.getCity(n-1),tour.getCity(0));
+		return cost;
 	}
 	/**
 	 * static access to the calculator
@@ -30,22 +54,75 @@ public class TSPCostCalculator{
 	 * @param s the TSP solution (permutation)
 	 * @return the cost of <code>s</code>
 	 */
-	public static double calcOF(double[][] matrix, ArrayList<Integer> s){
-		distMatrix=matrix;
-		TSPCostCalculator.s=s;
-		return calc();
+	public static double calcOF(double[][] matrix, List<Integer> s){
+		double cost=0;
+		for(int i=1;i<s.size();i++){
+			cost=cost+matrix[s.get(i-1)][s.get(i)];
+		}
+		cost=cost+matrix[s.get(s.size()-1)][s.get(0)];
+		return cost;
 	}
 	/**
-	 * internal implementation of the calculator
-	 * @return the cost of a TSP solution
+	 * Computes the cost of the path visiting the cities of a tour from position <code>from</code> to position
+	 * <code>to</code>. If <code>from&gt;to</code> the path wraps around the end of the tour.
+	 * @param instance the instance data
+	 * @param tour the tour
+	 * @param from the position of the first city of the path
+	 * @param to the position of the last city of the path
+	 * @return the cost of the path (0 if it holds a single city)
 	 */
-	private static double calc(){
+	public static double calcPath(Instance instance, Tour tour, int from, int to){
+		int n=tour.size();
 		double cost=0;
-		for(int i=1;i<s.size();i++){
-			cost=cost+distMatrix[s.get(i-1)][s.get(i)];
+		for(int i=from;i!=to;){
+			int next=i+1==n ? 0 : i+1;
+			cost=cost+instance.getDistance(tour.getCity(i),tour.getCity(next));
+			i=next;
+		}
+		return cost;
+	}
+	/**
+	 * Computes the cost of the path visiting the cities of a solution from position <code>from</code> to position
+	 * <code>to</code>. If <code>from&gt;to</code> the path wraps around the end of the solution.
+	 * @param instance the instance data
+	 * @param s the solution
+	 * @param from the position of the first city of the path
+	 * @param to the position of the last city of the path
+	 * @return the cost of the path (0 if it holds a single city)
+	 */
+	public static double calcPath(Instance instance, List<Integer> s, int from, int to){
+		int n=s.size();
+		double cost=0;
+		for(int i=from;i!=to;){
+			int next=i+1==n ? 0 : i+1;
+			cost=cost+instance.getDistance(s.get(i),s.get(next));
+			i=next;
 		}
-		cost=cost+distMatrix[s.get(s.size()-1)][s.get(0)];
 		return cost;
 	}
+	/**
+	 * Checks the objective function stored in a tour against a full recomputation
+	 * @param instance the instance data
+	 * @param tour the tour
+	 * @param tolerance the accepted relative difference
+	 * @return <code>true</code> if the stored objective function matches the cost of the tour
+	 */
+	public static boolean checkOF(Instance instance, Tour tour, double tolerance){
+		return matches(tour.getOF(), calcOF(instance, tour), tolerance);
+	}
+	/**
+	 * Checks the objective function stored in a solution against a full recomputation
+	 * @param instance the instance data
+	 * @param s the solution
+	 * @param tolerance the accepted relative difference
+	 * @return <code>true</code> if the stored objective function matches the cost of <code>s</code>
+	 */
+	public static boolean checkOF(Instance instance, Solution s, double tolerance){
+		return matches(s.getOF(), calcOF(instance, s), tolerance);
+	}
+	//compares a cached objective function with the exact one
+	private static boolean matches(double cached, double exact, double tolerance){
+		return Math.abs(cached-exact)<=tolerance*Math.max(1, Math.abs(exact));
+	}
 
 }
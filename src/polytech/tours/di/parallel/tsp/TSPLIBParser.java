@@ -0,0 +1,293 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the coordinates of a TSPLIB file. The file is memory-mapped and its bytes are scanned directly: the header
+ * keys are compared in place and the numbers are parsed without building any <code>String</code>, so loading a file
+ * costs one pass over its bytes and the coordinates array.
+ * <p>
+ * The header must give the <code>DIMENSION</code> before the <code>NODE_COORD_SECTION</code>, which must hold exactly
+ * that number of <code>id x y</code> lines. Blank lines and extra spaces are ignored anywhere, and the final
+ * <code>EOF</code> line is optional. Any other deviation throws an {@link InstanceFormatException}.
+ * @version %I%, %G%
+ *
+ */
+class TSPLIBParser {
+	/**
+	 * The powers of ten exactly represented by a double
+	 */
+	private static final double[] POWERS_OF_TEN={
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	/**
+	 * Largest mantissa exactly represented by a double
+	 */
+	private static final long MAX_EXACT_MANTISSA=1L<<53;
+	/**
+	 * The name of the file, for the error messages
+	 */
+	private final String file;
+	/**
+	 * The content of the file
+	 */
+	private final ByteBuffer buffer;
+	/**
+	 * The size of the file
+	 */
+	private final int limit;
+	/**
+	 * The position of the next byte to read
+	 */
+	private int position=0;
+	/**
+	 * The line of the next byte to read, starting at 1
+	 */
+	private int line=1;
+
+	private TSPLIBParser(String file, ByteBuffer buffer){
+		this.file=file;
+		this.buffer=buffer;
+		this.limit=buffer.limit();
+	}
+
+	/**
+	 * Reads the coordinates of the nodes of a TSPLIB file
+	 * @param path the file
+	 * @return the coordinates, one row of 2 columns per node
+	 * @throws IOException if the file cannot be read
+	 * @throws InstanceFormatException if the file is malformed
+	 */
+	static double[][] parse(Path path) throws IOException{
+		try(FileChannel channel=FileChannel.open(path, StandardOpenOption.READ)){
+			long size=channel.size();
+			if(size>Integer.MAX_VALUE)
+				throw new InstanceFormatException(path.toString(), 1, "file larger than 2 GB");
+			ByteBuffer buffer=channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return new TSPLIBParser(path.toString(), buffer).parse();
+		}
+	}
+
+	//Reads the header, then the nodes
+	private double[][] parse(){
+		int dimension=-1;
+		while(true){
+			skipBlank();
+			if(position==limit)
+				throw error("missing NODE_COORD_SECTION");
+			int start=position;
+			while(position<limit && !isDelimiter(buffer.get(position)) && buffer.get(position)!=':'){
+				position++;
+			}
+			int end=position;
+			if(keyEquals(start, end, "NODE_COORD_SECTION")){
+				skipLine();
+				break;
+			}
+			if(keyEquals(start, end, "EOF"))
+				throw error("missing NODE_COORD_SECTION");
+			skipSpaces();
+			if(position<limit && buffer.get(position)==':'){
+				position++;
+				skipSpaces();
+			}
+			if(keyEquals(start, end, "DIMENSION")){
+				long value=parseInteger();
+				if(value<=0 || value>Integer.MAX_VALUE)
+					throw error("invalid DIMENSION "+value);
+				dimension=(int)value;
+				expectEndOfLine();
+			}else{
+				skipLine();
+			}
+		}
+		if(dimension<0)
+			throw error("DIMENSION must be given before NODE_COORD_SECTION");
+
+		double[][] coordinates=new double[dimension][2];
+		for(int i=0; i<dimension; i++){
+			skipBlank();
+			if(position==limit || isEOF())
+				throw error("expected "+dimension+" nodes, found "+i);
+			parseInteger();
+			coordinates[i][0]=parseDouble();
+			coordinates[i][1]=parseDouble();
+			expectEndOfLine();
+		}
+
+		skipBlank();
+		if(position<limit && !isEOF())
+			throw error("expected EOF after the "+dimension+" nodes");
+		return coordinates;
+	}
+
+	//Tells if the next token is EOF
+	private boolean isEOF(){
+		int end=position;
+		while(end<limit && !isDelimiter(buffer.get(end))){
+			end++;
+		}
+		return keyEquals(position, end, "EOF");
+	}
+
+	//Compares the bytes from start to end with a key, ignoring the case
+	private boolean keyEquals(int start, int end, String key){
+		if(end-start!=key.length())
+			return false;
+		for(int i=0; i<key.length(); i++){
+			int c=buffer.get(start+i);
+			if(c>='a' && c<='z')
+				c-='a'-'A';
+			if(c!=key.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	//Reads an integer, after the spaces
+	private long parseInteger(){
+		skipSpaces();
+		int start=position;
+		boolean negative=false;
+		if(position<limit && (buffer.get(position)=='-' || buffer.get(position)=='+'))
+			negative=buffer.get(position++)=='-';
+		long value=0;
+		int digits=0;
+		while(position<limit && isDigit(buffer.get(position))){
+			if(++digits>18)
+				throw error("integer too large");
+			value=10*value+buffer.get(position++)-'0';
+		}
+		if(digits==0 || (position<limit && !isDelimiter(buffer.get(position))))
+			throw error("invalid integer '"+token(start)+"'");
+		return negative ? -value : value;
+	}
+
+	/* Reads a decimal number, after the spaces. The digits are gathered in a long mantissa and a power of ten: when
+	 * both are exactly represented by a double, a single correctly rounded product or quotient gives the same value
+	 * as Double.parseDouble, which is only called for the other (rare) numbers */
+	private double parseDouble(){
+		skipSpaces();
+		int start=position;
+		boolean negative=false;
+		if(position<limit && (buffer.get(position)=='-' || buffer.get(position)=='+'))
+			negative=buffer.get(position++)=='-';
+		long mantissa=0;
+		int exponent=0, digits=0;
+		boolean exact=true;
+		while(position<limit && isDigit(buffer.get(position))){
+			int digit=buffer.get(position++)-'0';
+			if(mantissa<MAX_EXACT_MANTISSA){
+				mantissa=10*mantissa+digit;
+			}else{
+				exponent++;
+				exact&=digit==0;
+			}
+			digits++;
+		}
+		if(position<limit && buffer.get(position)=='.'){
+			position++;
+			while(position<limit && isDigit(buffer.get(position))){
+				int digit=buffer.get(position++)-'0';
+				if(mantissa<MAX_EXACT_MANTISSA){
+					mantissa=10*mantissa+digit;
+					exponent--;
+				}else{
+					exact&=digit==0;
+				}
+				digits++;
+			}
+		}
+		if(digits>0 && position<limit && (buffer.get(position)=='e' || buffer.get(position)=='E')){
+			position++;
+			boolean negativeExponent=false;
+			if(position<limit && (buffer.get(position)=='-' || buffer.get(position)=='+'))
+				negativeExponent=buffer.get(position++)=='-';
+			int value=0, exponentDigits=0;
+			while(position<limit && isDigit(buffer.get(position))){
+				value=Math.min(10*value+buffer.get(position++)-'0', 100_000);
+				exponentDigits++;
+			}
+			if(exponentDigits==0)
+				digits=0;
+			exponent+=negativeExponent ? -value : value;
+		}
+		if(digits==0 || (position<limit && !isDelimiter(buffer.get(position))))
+			throw error("invalid number '"+token(start)+"'");
+
+		if(!exact || mantissa>MAX_EXACT_MANTISSA || exponent<-22 || exponent>22)
+			return Double.parseDouble(token(start));
+		double value=exponent>=0 ? mantissa*POWERS_OF_TEN[exponent] : mantissa/POWERS_OF_TEN[-exponent];
+		return negative ? -value : value;
+	}
+
+	//The token beginning at start, for the error messages and the slow path
+	private String token(int start){
+		int end=start;
+		while(end<limit && !isDelimiter(buffer.get(end))){
+			end++;
+		}
+		byte[] bytes=new byte[end-start];
+		for(int i=0; i<bytes.length; i++){
+			bytes[i]=buffer.get(start+i);
+		}
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	//Checks that only spaces remain on the line, and moves to the next one
+	private void expectEndOfLine(){
+		skipSpaces();
+		if(position<limit && buffer.get(position)!='\n')
+			throw error("unexpected '"+token(position)+"'");
+		skipLine();
+	}
+
+	//Moves to the beginning of the next line
+	private void skipLine(){
+		while(position<limit && buffer.get(position)!='\n'){
+			position++;
+		}
+		if(position<limit){
+			position++;
+			line++;
+		}
+	}
+
+	//Skips the spaces and tabs of the current line
+	private void skipSpaces(){
+		while(position<limit && isSpace(buffer.get(position))){
+			position++;
+		}
+	}
+
+	//Skips the spaces and the blank lines
+	private void skipBlank(){
+		while(position<limit && (isSpace(buffer.get(position)) || buffer.get(position)=='\n')){
+			if(buffer.get(position++)=='\n')
+				line++;
+		}
+	}
+
+	private InstanceFormatException error(String message){
+		return new InstanceFormatException(file, line, message);
+	}
+
+	private static boolean isDigit(byte b){
+		return b>='0' && b<='9';
+	}
+
+	private static boolean isSpace(byte b){
+		return b==' ' || b=='\t' || b=='\r' || b=='\f';
+	}
+
+	private static boolean isDelimiter(byte b){
+		return isSpace(b) || b=='\n';
+	}
+
+}
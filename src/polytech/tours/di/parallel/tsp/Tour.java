@@ -0,0 +1,263 @@
+package polytech.tours.di.parallel.tsp;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Primitive implementation of a TSP tour. The permutation is stored in an <code>int[]</code> together with its
+ * inverse (city &rarr; position), so both the city at a position and the position of a city are found in O(1).
+ * <p>
+ * Unlike {@link Solution}, a tour never boxes its cities and all its operations are performed in place: a worker can
+ * allocate its tours once and reuse them for the whole search. Use {@link #toSolution()} and
+ * {@link #Tour(List)} to exchange tours with code written against {@link Solution}.
+ * <p>
+ * Instances of this class are not thread-safe.
+ * @version %I%, %G%
+ *
+ */
+public class Tour implements Cloneable{
+	/**
+	 * The city at each position
+	 */
+	private final int[] cities;
+	/**
+	 * The position of each city
+	 */
+	private final int[] positions;
+	/**
+	 * The objective function
+	 */
+	private double of=Double.NaN;
+
+	/**
+	 * Builds the tour visiting cities <code>0</code> to <code>n-1</code> in order
+	 * @param n the number of cities
+	 */
+	public Tour(int n){
+		this.cities=new int[n];
+		this.positions=new int[n];
+		for(int i=0; i<n; i++){
+			cities[i]=i;
+			positions[i]=i;
+		}
+	}
+
+	/**
+	 * Builds a tour from a permutation of cities
+	 * @param cities the cities in visiting order, the array is copied
+	 */
+	public Tour(int[] cities){
+		this.cities=cities.clone();
+		this.positions=new int[cities.length];
+		for(int i=0; i<cities.length; i++){
+			positions[cities[i]]=i;
+		}
+	}
+
+	/**
+	 * Builds a tour from a solution (or any permutation of cities held in a list)
+	 * @param solution the solution
+	 */
+	public Tour(List<Integer> solution){
+		int n=solution.size();
+		this.cities=new int[n];
+		this.positions=new int[n];
+		for(int i=0; i<n; i++){
+			cities[i]=solution.get(i);
+			positions[cities[i]]=i;
+		}
+		if(solution instanceof Solution)
+			this.of=((Solution)solution).getOF();
+	}
+
+	/**
+	 * 
+	 * @return the number of cities in the tour
+	 */
+	public int size(){
+		return cities.length;
+	}
+
+	/**
+	 * 
+	 * @param i the position, 0 &lt;= i &lt; {@link #size()}
+	 * @return the city visited at position <code>i</code>
+	 */
+	public int getCity(int i){
+		return cities[i];
+	}
+
+	/**
+	 * 
+	 * @param city the city
+	 * @return the position of <code>city</code> in the tour
+	 */
+	public int getPosition(int city){
+		return positions[city];
+	}
+
+	/**
+	 * 
+	 * @param city the city
+	 * @return the city visited right after <code>city</code>
+	 */
+	public int next(int city){
+		int i=positions[city]+1;
+		return cities[i==cities.length ? 0 : i];
+	}
+
+	/**
+	 * 
+	 * @param city the city
+	 * @return the city visited right before <code>city</code>
+	 */
+	public int previous(int city){
+		int i=positions[city];
+		return cities[i==0 ? cities.length-1 : i-1];
+	}
+
+	/**
+	 * 
+	 * @return the objective function of the tour
+	 */
+	public double getOF(){
+		return this.of;
+	}
+
+	/**
+	 * Sets the objective function of the tour
+	 * @param of the objective to set
+	 */
+	public void setOF(double of){
+		this.of=of;
+	}
+
+	/**
+	 * Swaps the city in position <code>i</code> and the city in position <code>j</code>. Like all the moves of this
+	 * class, the method does not update the objective function.
+	 * @param i the first swapping position. 0 &lt;= i &lt; {@link #size()}
+	 * @param j the second swapping position. 0 &lt;= j &lt; {@link #size()}
+	 */
+	public void swap(int i, int j){
+		int ci=cities[i];
+		int cj=cities[j];
+		cities[i]=cj;
+		positions[cj]=i;
+		cities[j]=ci;
+		positions[ci]=j;
+	}
+
+	/**
+	 * Moves the city in position <code>i</code> to position <code>j</code>, shifting the cities in between by one
+	 * position. Runs in O(|i-j|) without allocation.
+	 * @param i the extracting position
+	 * @param j the position of the city once relocated
+	 */
+	public void relocate(int i, int j){
+		int city=cities[i];
+		if(i<j){
+			System.arraycopy(cities, i+1, cities, i, j-i);
+			for(int k=i; k<j; k++){
+				positions[cities[k]]=k;
+			}
+		}else if(j<i){
+			System.arraycopy(cities, j, cities, j+1, i-j);
+			for(int k=j+1; k<=i; k++){
+				positions[cities[k]]=k;
+			}
+		}
+		cities[j]=city;
+		positions[city]=j;
+	}
+
+	/**
+	 * Reverses the segment going from position <code>i</code> to position <code>j</code> (both included). If
+	 * <code>i&gt;j</code> the segment wraps around the end of the tour. Runs in O(length of the segment).
+	 * @param i the first position of the segment
+	 * @param j the last position of the segment
+	 */
+	public void reverse(int i, int j){
+		int n=cities.length;
+		int length=(j-i+n)%n+1;
+		for(int k=0; k<length/2; k++){
+			int ci=cities[i];
+			int cj=cities[j];
+			cities[i]=cj;
+			positions[cj]=i;
+			cities[j]=ci;
+			positions[ci]=j;
+			if(++i==n) i=0;
+			if(--j<0) j=n-1;
+		}
+	}
+
+	/**
+	 * Shuffles the tour (Fisher-Yates)
+	 * @param random the source of randomness
+	 */
+	public void shuffle(Random random){
+		for(int i=cities.length-1; i>0; i--){
+			swap(i, random.nextInt(i+1));
+		}
+	}
+
+	/**
+	 * Copies this tour and its objective function into a tour of the same size, without allocating
+	 * @param destination the tour to overwrite
+	 */
+	public void copyTo(Tour destination){
+		if(destination.cities.length!=cities.length)
+			throw new IllegalArgumentException("the tours must have the same size");
+		System.arraycopy(cities, 0, destination.cities, 0, cities.length);
+		System.arraycopy(positions, 0, destination.positions, 0, positions.length);
+		destination.of=this.of;
+	}
+
+	/**
+	 * Overwrites the permutation of this tour, without allocating. The objective function is not updated.
+	 * @param source the cities in visiting order, of length {@link #size()}
+	 */
+	public void setCities(int[] source){
+		if(source.length!=cities.length)
+			throw new IllegalArgumentException("the tours must have the same size");
+		System.arraycopy(source, 0, cities, 0, cities.length);
+		for(int i=0; i<cities.length; i++){
+			positions[cities[i]]=i;
+		}
+	}
+
+	/**
+	 * Copies the permutation into an array
+	 * @param destination the array to fill, of length at least {@link #size()}
+	 */
+	public void copyTo(int[] destination){
+		System.arraycopy(cities, 0, destination, 0, cities.length);
+	}
+
+	/**
+	 * 
+	 * @return a {@link Solution} holding the same permutation and objective function
+	 */
+	public Solution toSolution(){
+		Solution solution=new Solution();
+		solution.ensureCapacity(cities.length);
+		for(int city:cities){
+			solution.add(city);
+		}
+		solution.setOF(of);
+		return solution;
+	}
+
+	@Override
+	public Tour clone(){
+		Tour clone=new Tour(cities);
+		clone.of=this.of;
+		return clone;
+	}
+
+	@Override
+	public String toString(){
+		return toSolution().toString();
+	}
+
+}
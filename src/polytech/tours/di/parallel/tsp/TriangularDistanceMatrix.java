@@ -0,0 +1,64 @@
+package polytech.tours.di.parallel.tsp;
+
+/**
+ * Stores only the upper triangle of the distance matrix, packed row after row in a single <code>double[]</code>.
+ * Distances are exact (the same as {@link DenseDistanceMatrix}) for half the memory, at the cost of a little index
+ * arithmetic per lookup.
+ * @version %I%, %G%
+ *
+ */
+public class TriangularDistanceMatrix implements DistanceMatrix {
+	/**
+	 * The number of nodes
+	 */
+	private final int n;
+	/**
+	 * The distances d(i,j) for i&lt;j
+	 */
+	private final double[] triangle;
+
+	/**
+	 * Builds the matrix from a coordinates matrix
+	 * @param coordinates the coordinates matrix (one row per node, two columns)
+	 */
+	public TriangularDistanceMatrix(double[][] coordinates) {
+		this.n=coordinates.length;
+		long size=(long)n*(n-1)/2;
+		//The JVMs reserve a few header words below Integer.MAX_VALUE
+		if(size>Integer.MAX_VALUE-8)
+			throw new IllegalArgumentException("too many nodes for a single array: "+n);
+		this.triangle=new double[(int)size];
+		int k=0;
+		for(int i=0; i<n; i++){
+			for(int j=i+1; j<n; j++){
+				triangle[k++]=EuclideanCalculator.calc(coordinates[i][0],coordinates[i][1],coordinates[j][0],coordinates[j][1]);
+			}
+		}
+	}
+
+	/**
+	 * Computes the position of d(i,j) in a packed upper triangle
+	 * @param n the number of nodes
+	 * @param i the first node
+	 * @param j the second node, <code>i&lt;j</code>
+	 * @return the index of the distance in the packed triangle
+	 */
+	static long index(int n, int i, int j){
+		return (long)i*(2*n-i-1)/2+(j-i-1);
+	}
+
+	@Override
+	public double getDistance(int i, int j) {
+		if(i<j)
+			return triangle[(int)index(n, i, j)];
+		if(j<i)
+			return triangle[(int)index(n, j, i)];
+		return 0;
+	}
+
+	@Override
+	public int getN() {
+		return n;
+	}
+
+}
@@ -0,0 +1,178 @@
+package polytech.tours.di.parallel.tsp.construction;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.KDTree;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/**
+ * Builds greedy edge tours: the edges between each city and its candidates are taken by increasing length, an edge
+ * being kept if both its cities have less than two edges and it does not close a cycle. The resulting paths are
+ * then chained with the nearest neighbor rule, the closest path end being found in the k-d tree of the remaining
+ * path ends. A tour is built in O(n k log(n k)).
+ * <p>
+ * The randomized variant multiplies each edge length by a random factor between 1 and 1+{@link #NOISE} and starts
+ * the chaining from a random path.
+ * @version %I%, %G%
+ *
+ */
+public class GreedyEdgeConstructor implements TourConstructor {
+	/**
+	 * Number of candidate edges per city
+	 */
+	private static final int CANDIDATES=10;
+	/**
+	 * Maximum relative noise added to the edge lengths by the randomized variant
+	 */
+	public static final double NOISE=0.1;
+	/**
+	 * The instance
+	 */
+	private final Instance instance;
+	/**
+	 * The candidate edges (i, j), with i&lt;j
+	 */
+	private final int[] edgeFrom, edgeTo;
+	/**
+	 * The candidate edges packed with their length, to be sorted
+	 */
+	private final long[] keys;
+	/**
+	 * The path ends not chained yet
+	 */
+	private final KDTree.Remaining remaining;
+	/**
+	 * The (at most two) neighbors of each city in the paths, -1 if none
+	 */
+	private final int[] adjacent;
+	/**
+	 * Union-find forest of the paths
+	 */
+	private final int[] parents;
+	/**
+	 * The tour being built
+	 */
+	private final int[] cities;
+
+	/**
+	 * Builds the constructor
+	 * @param instance the instance, with coordinates
+	 */
+	public GreedyEdgeConstructor(Instance instance) {
+		this.instance=instance;
+		int n=instance.getN();
+		CandidateLists candidates=instance.getCandidateLists(Math.min(CANDIDATES, n-1));
+		int k=candidates.getK();
+
+		//keep each edge once
+		int count=0;
+		int[] from=new int[n*k], to=new int[n*k];
+		for(int i=0; i<n; i++){
+			for(int r=0; r<k; r++){
+				int j=candidates.get(i, r);
+				if(i<j || !isCandidate(candidates, j, i)){
+					from[count]=Math.min(i, j);
+					to[count]=Math.max(i, j);
+					count++;
+				}
+			}
+		}
+		this.edgeFrom=Arrays.copyOf(from, count);
+		this.edgeTo=Arrays.copyOf(to, count);
+		this.keys=new long[count];
+		this.remaining=instance.getKDTree().newRemaining();
+		this.adjacent=new int[2*n];
+		this.parents=new int[n];
+		this.cities=new int[n];
+	}
+
+	//Tells if city j is a candidate of city i
+	private static boolean isCandidate(CandidateLists candidates, int i, int j){
+		for(int r=0; r<candidates.getK(); r++){
+			if(candidates.get(i, r)==j)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void build(Tour tour, Random random) {
+		int n=instance.getN();
+		Arrays.fill(adjacent, -1);
+		for(int i=0; i<n; i++){
+			parents[i]=i;
+		}
+
+		//sort the edges: the bits of a positive float grow with its value
+		for(int e=0; e<keys.length; e++){
+			double length=instance.getDistance(edgeFrom[e], edgeTo[e]);
+			if(random!=null)
+				length*=1+NOISE*random.nextDouble();
+			keys[e]=((long)Float.floatToIntBits((float)length)<<32) | e;
+		}
+		Arrays.sort(keys);
+
+		//greedy matching of the edges into paths
+		for(long key:keys){
+			int e=(int)key;
+			int i=edgeFrom[e], j=edgeTo[e];
+			if(adjacent[2*i+1]>=0 || adjacent[2*j+1]>=0)
+				continue;
+			int rootI=find(i), rootJ=find(j);
+			if(rootI==rootJ)
+				continue;
+			parents[rootI]=rootJ;
+			link(i, j);
+			link(j, i);
+		}
+
+		//only the path ends (and the isolated cities) can be chained
+		remaining.reset();
+		for(int i=0; i<n; i++){
+			if(adjacent[2*i+1]>=0)
+				remaining.remove(i);
+		}
+
+		//chain the paths with the nearest neighbor rule
+		int size=0;
+		int start=random==null ? 0 : random.nextInt(n);
+		int end=remaining.nearest(instance.getX(start), instance.getY(start));
+		while(size<n){
+			int previous=-1, city=end;
+			remaining.remove(city);
+			while(city>=0){
+				cities[size++]=city;
+				int next=adjacent[2*city]!=previous ? adjacent[2*city] : adjacent[2*city+1];
+				previous=city;
+				city=next;
+			}
+			remaining.remove(previous);
+			if(size<n)
+				end=remaining.nearest(instance.getX(previous), instance.getY(previous));
+		}
+		tour.setCities(cities);
+		tour.setOF(TSPCostCalculator.calcOF(instance, tour));
+	}
+
+	//Adds j to the neighbors of i
+	private void link(int i, int j){
+		if(adjacent[2*i]<0)
+			adjacent[2*i]=j;
+		else
+			adjacent[2*i+1]=j;
+	}
+
+	//Finds the root of a path, with path halving
+	private int find(int i){
+		while(parents[i]!=i){
+			parents[i]=parents[parents[i]];
+			i=parents[i];
+		}
+		return i;
+	}
+
+}
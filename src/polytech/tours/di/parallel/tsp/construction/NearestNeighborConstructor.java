@@ -0,0 +1,92 @@
+package polytech.tours.di.parallel.tsp.construction;
+
+import java.util.Random;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.KDTree;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/**
+ * Builds nearest neighbor tours: from a start city, the tour always goes to the closest city not visited yet. The
+ * closest city is looked for in the candidate lists first, and in the k-d tree of the remaining cities when all the
+ * candidates are visited, so a tour is built in O(n log n).
+ * <p>
+ * The randomized variant starts from a random city and, with probability {@link #SECOND_CHOICE}, goes to the second
+ * closest city instead of the closest one.
+ * @version %I%, %G%
+ *
+ */
+public class NearestNeighborConstructor implements TourConstructor {
+	/**
+	 * Number of candidates looked at before querying the k-d tree
+	 */
+	private static final int CANDIDATES=8;
+	/**
+	 * Probability of the randomized variant to go to the second closest city
+	 */
+	public static final double SECOND_CHOICE=0.1;
+	/**
+	 * The instance
+	 */
+	private final Instance instance;
+	/**
+	 * The nearest neighbors of each city
+	 */
+	private final CandidateLists candidates;
+	/**
+	 * The cities not visited yet
+	 */
+	private final KDTree.Remaining remaining;
+	/**
+	 * The tour being built
+	 */
+	private final int[] cities;
+
+	/**
+	 * Builds the constructor
+	 * @param instance the instance, with coordinates
+	 */
+	public NearestNeighborConstructor(Instance instance) {
+		this.instance=instance;
+		this.candidates=instance.getCandidateLists(Math.min(CANDIDATES, instance.getN()-1));
+		this.remaining=instance.getKDTree().newRemaining();
+		this.cities=new int[instance.getN()];
+	}
+
+	@Override
+	public void build(Tour tour, Random random) {
+		int n=instance.getN();
+		remaining.reset();
+		int city=random==null ? 0 : random.nextInt(n);
+		for(int i=0; i<n; i++){
+			cities[i]=city;
+			remaining.remove(city);
+			if(i<n-1)
+				city=next(city, random);
+		}
+		tour.setCities(cities);
+		tour.setOF(TSPCostCalculator.calcOF(instance, tour));
+	}
+
+	//Finds the next city of the tour
+	private int next(int city, Random random){
+		boolean second=random!=null && random.nextDouble()<SECOND_CHOICE;
+		int first=-1;
+		for(int r=0; r<candidates.getK(); r++){
+			int candidate=candidates.get(city, r);
+			if(remaining.contains(candidate)){
+				if(!second)
+					return candidate;
+				if(first>=0)
+					return candidate;
+				first=candidate;
+			}
+		}
+		if(first>=0)
+			return first;
+		return remaining.nearest(instance.getX(city), instance.getY(city));
+	}
+
+}
@@ -0,0 +1,39 @@
+package polytech.tours.di.parallel.tsp.construction;
+
+import java.util.Random;
+
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/**
+ * Builds uniformly random tours. The deterministic variant always gives the same tour, a shuffle seeded with
+ * {@link #DETERMINISTIC_SEED}.
+ * @version %I%, %G%
+ *
+ */
+public class RandomConstructor implements TourConstructor {
+	/**
+	 * Seed of the shuffle of the deterministic variant
+	 */
+	public static final long DETERMINISTIC_SEED=0;
+	/**
+	 * The instance
+	 */
+	private final Instance instance;
+
+	/**
+	 * Builds the constructor
+	 * @param instance the instance
+	 */
+	public RandomConstructor(Instance instance) {
+		this.instance=instance;
+	}
+
+	@Override
+	public void build(Tour tour, Random random) {
+		tour.shuffle(random==null ? new Random(DETERMINISTIC_SEED) : random);
+		tour.setOF(TSPCostCalculator.calcOF(instance, tour));
+	}
+
+}
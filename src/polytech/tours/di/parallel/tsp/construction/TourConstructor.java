@@ -0,0 +1,46 @@
+package polytech.tours.di.parallel.tsp.construction;
+
+import java.util.Random;
+
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/**
+ * Defines the interface to the heuristics building start tours. A constructor keeps buffers between two calls, so
+ * each thread must use its own constructor.
+ * @version %I%, %G%
+ *
+ */
+public interface TourConstructor {
+
+	/**
+	 * Builds a tour and computes its objective function
+	 * @param tour the tour to overwrite
+	 * @param random the source of randomness of the randomized variant, <code>null</code> for the deterministic one
+	 */
+	public void build(Tour tour, Random random);
+
+	/**
+	 * Creates a constructor from its name: <code>random</code> ({@link RandomConstructor}), <code>nearest</code>
+	 * ({@link NearestNeighborConstructor}), <code>greedy</code> ({@link GreedyEdgeConstructor}) or
+	 * <code>hilbert</code> ({@link SpaceFillingCurveConstructor})
+	 * @param name the name of the heuristic
+	 * @param instance the instance, with coordinates for all but <code>random</code>
+	 * @return a new constructor
+	 */
+	public static TourConstructor create(String name, Instance instance){
+		switch(name){
+		case "random":
+			return new RandomConstructor(instance);
+		case "nearest":
+			return new NearestNeighborConstructor(instance);
+		case "greedy":
+			return new GreedyEdgeConstructor(instance);
+		case "hilbert":
+			return new SpaceFillingCurveConstructor(instance);
+		default:
+			throw new IllegalArgumentException("unknown construction heuristic: "+name);
+		}
+	}
+
+}
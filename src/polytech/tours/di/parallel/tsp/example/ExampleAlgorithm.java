@@ -43,7 +43,7 @@ public class ExampleAlgorithm implements Algorithm {
 		while((System.currentTimeMillis()-startTime)/1_000<=max_cpu){	
 			Collections.shuffle(s,rnd);
 			//set the objective function of the solution
-			s.setOF(TSPCostCalculator.calcOF(instance.getDistanceMatrix(), s));
+			s.setOF(TSPCostCalculator.calcOF(instance, s));
 			System.out.println(s);
 			if(best==null)
 				best=s.clone();
@@ -1,95 +1,496 @@
 package polytech.tours.di.parallel.tsp.fourtytwo;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Properties;
-import java.util.concurrent.Callable;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import polytech.tours.di.parallel.tsp.Algorithm;
+import polytech.tours.di.parallel.tsp.AnytimeAlgorithm;
+import polytech.tours.di.parallel.tsp.CandidateLists;
 import polytech.tours.di.parallel.tsp.Instance;
 import polytech.tours.di.parallel.tsp.InstanceReader;
+import polytech.tours.di.parallel.tsp.PooledAlgorithm;
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.ResumableAlgorithm;
 import polytech.tours.di.parallel.tsp.Solution;
+import polytech.tours.di.parallel.tsp.SplittableRandomAdapter;
+import polytech.tours.di.parallel.tsp.construction.TourConstructor;
 
-public class Algorithm42 implements Algorithm {
+public class Algorithm42 implements PooledAlgorithm, AnytimeAlgorithm, ResumableAlgorithm {
+	//Count of nearest neighbors used by 2-opt and Lin-Kernighan when none is configured
+	private static final int DEFAULT_CANDIDATES = 10;
+	//Count of nearest neighbors giving the edges of the lower bound ascent
+	private static final int BOUND_CANDIDATES = 10;
+	
 	private long timeMax;
 	private int countThreads;
+	private boolean isAutoThreads;
 	private Instance instance;
 	private boolean isVerbose;
+	private CandidateLists candidates;
+	private String localSearch;
+	private boolean isParallelScan;
+	private String construction;
+	private boolean isIterated;
+	private int maxDepth;
+	private int eliteSize;
+	private double eliteRate;
+	private boolean isJMX;
+	private String telemetryCSV;
+	private String telemetryJSON;
+	private Telemetry telemetry;
+	private boolean isDeterministic;
+	private long seed;
+	private long maxIterations;
+	private String runName;
+	private double targetOF;
+	private boolean isLowerBound;
+	private double targetGap;
+	private String checkpointFile;
+	private long checkpointPeriod;
+	//The checkpoint the run goes on from, null for a new run
+	private Checkpoint resumed;
+	private ProgressListener listener;
+	//The end of the current run, null between two runs
+	private volatile Deadline deadline;
+	//Resources shared with other runs, null to use those of the run
+	private ExecutorService sharedWorkers;
+	private ScheduledExecutorService sharedScheduler;
+	private Instance sharedInstance;
+	//Tours shared with other searches, null to use those of the run
+	private ElitePool sharedElitePool;
 
 	@Override
 	public Solution run(Properties config) {
+		return run(config, null);
+	}
+	
+	@Override
+	public Solution run(Properties config, ProgressListener listener) {
+		this.listener = listener;
+		//A stop while the instance and the candidates load reaches the deadline of the run, created later
+		deadline = Deadline.none();
 		
-		//Build the instance from the config file
-		InstanceReader ir = new InstanceReader();
-		ir.buildInstance(config.getProperty("instance"));
-		instance = ir.getInstance();
+		//Build the instance from the config file, unless it is shared
+		if(sharedInstance != null) {
+			instance = sharedInstance;
+		} else {
+			InstanceReader ir = new InstanceReader();
+			ir.configure(config);
+			ir.buildInstance(config.getProperty("instance"));
+			instance = ir.getInstance();
+		}
 
-		//Manage the timing (*1000 to have the time in millisec)
-		timeMax = Long.valueOf(config.getProperty("maxcpu"));
-		
 		//If we should print what the threads do
 		isVerbose = Boolean.valueOf(config.getProperty("verbose"));
 		
-		//Specify the count of threads
+		//Specify the count of threads, "auto" to tune it while the run lasts (up to twice the cores)
 		int availableProcessors = Runtime.getRuntime().availableProcessors();
-		countThreads = Integer.valueOf(config.getProperty("maxthreads"));
+		String threads = config.getProperty("maxthreads");
+		isAutoThreads = threads.equals("auto");
+		countThreads = isAutoThreads ? 2 * availableProcessors : Integer.valueOf(threads);
 		if(countThreads == 0)
 			countThreads = availableProcessors;
 		
+		//The descent run by the threads: "swap", "2opt" (2-opt and Or-opt moves) or "lk" (Lin-Kernighan)
+		localSearch = config.getProperty("localsearch", "swap");
+		//Evaluate each pass of the exhaustive swap search on all the cores
+		isParallelScan = Boolean.valueOf(config.getProperty("parallelscan", "false"));
+		
+		//The start tours: "random", "nearest" (nearest neighbor), "greedy" (greedy edge) or "hilbert" (space filling curve)
+		construction = config.getProperty("construction", "random");
+		
+		//Kick the best tour ("kick") instead of restarting from a random one ("restart")
+		isIterated = config.getProperty("perturbation", "restart").equals("kick");
+		
+		//Maximum count of 2-opt moves chained by the Lin-Kernighan search
+		maxDepth = Integer.valueOf(config.getProperty("lkdepth", "10"));
+		
+		//Count of best tours shared by the threads (0 for independent threads)
+		eliteSize = Integer.valueOf(config.getProperty("elitesize", "8"));
+		//Probability that a restart begins with a perturbed elite tour
+		eliteRate = Double.valueOf(config.getProperty("eliterate", "0.8"));
+		
+		//Restrict the neighborhood to the k nearest neighbors of each city (0 for all)
+		int k = Integer.valueOf(config.getProperty("candidates", "0"));
+		//2-opt and Lin-Kernighan have no exhaustive mode, they always need candidates
+		if(k == 0 && !localSearch.equals("swap"))
+			k = DEFAULT_CANDIDATES;
+		candidates = k > 0 ? instance.getCandidateLists(Math.min(k, instance.getN() - 1)) : null;
+		
+		//Go on from the tour, the time left and the streams of a checkpoint (Launcher -resume)
+		String resume = config.getProperty("resume");
+		resumed = resume != null ? readCheckpoint(resume) : null;
+		
+		//Deterministic mode: every thread draws from its own stream split from the seed
+		String configSeed = config.getProperty("seed");
+		isDeterministic = configSeed != null;
+		seed = isDeterministic ? Long.valueOf(configSeed) : 0;
+		//A resumed run goes on with the streams of the checkpoint, it cannot change them
+		if(resumed != null) {
+			if(isDeterministic && (!resumed.isDeterministic() || resumed.getSeed() != seed))
+				throw new IllegalArgumentException("The checkpoint " + resume + " was written by a run "
+						+ (resumed.isDeterministic() ? "with seed " + resumed.getSeed() : "without seed")
+						+ ", not with seed " + seed);
+			isDeterministic = resumed.isDeterministic();
+			seed = resumed.getSeed();
+		}
+		//Count of descents of each thread, replaces the time limit (0 to use maxcpu)
+		maxIterations = Long.valueOf(config.getProperty("iterations", "0"));
+		//Manage the timing (s), only needed without an iterations budget
+		timeMax = maxIterations == 0 ? Long.valueOf(config.getProperty("maxcpu")) : 0;
+		//The tuning depends on the timing and needs a time limit: all the cores otherwise
+		if(isAutoThreads && (isDeterministic || maxIterations > 0)) {
+			isAutoThreads = false;
+			countThreads = availableProcessors;
+		}
+		
+		//Expose the metrics of the run through JMX while it lasts
+		isJMX = Boolean.valueOf(config.getProperty("jmx", "true"));
+		//Distinguishes the MBeans of simultaneous runs
+		runName = config.getProperty("name");
+		//Files receiving the metrics at the end of the run (none by default)
+		telemetryCSV = config.getProperty("telemetrycsv");
+		telemetryJSON = config.getProperty("telemetryjson");
+		
+		//Stop as soon as a tour costs at most this (no target by default)
+		String target = config.getProperty("targetof");
+		targetOF = target != null ? Double.valueOf(target) : Double.NEGATIVE_INFINITY;
+		//Stop as soon as the best tour is proved within this relative gap of the optimum (0 for none)
+		targetGap = Double.valueOf(config.getProperty("targetgap", "0"));
+		//Compute a lower bound on a thread of its own, reported with the solution
+		isLowerBound = targetGap > 0 || Boolean.valueOf(config.getProperty("lowerbound", "false"));
+		//The bound is one of the threads of the run, which stays within maxthreads (the cores of a batch job)
+		if(isLowerBound && !isAutoThreads && countThreads > 1)
+			countThreads--;
+		
+		if(isVerbose && resumed != null)
+			System.out.println("Resumed from " + resume + ": " + resumed.getOF() + " after "
+					+ resumed.getElapsedNanos() / 1e9f + "s");
+		//Save the best tour periodically to this file, by default the one resumed (none otherwise)
+		checkpointFile = config.getProperty("checkpoint", resume);
+		//Time between two checkpoints (s)
+		checkpointPeriod = Long.valueOf(config.getProperty("checkpointperiod", "60"));
+		
 		return executeThreads();
 	}
 	
 	public Solution executeThreads() {
-		List<Solution> solutions = new ArrayList<Solution>(countThreads);
-		List<Callable<Object>> threads = new ArrayList<Callable<Object>>(countThreads);
-		final ScheduledExecutorService executor = Executors.newScheduledThreadPool(countThreads + 1);
-		
-		//Thread that cancel all the other one after the timeout
-		executor.schedule(new Runnable() {
-			public void run() {
-				executor.shutdownNow();
-			}
-		}, timeMax, TimeUnit.SECONDS);
+		List<WorkerTask> tasks = new ArrayList<WorkerTask>(countThreads);
+		//Threads of this run only, unless the caller shares its own
+		final ExecutorService workers = sharedWorkers != null ? sharedWorkers : Executors.newFixedThreadPool(countThreads);
+		final ScheduledExecutorService scheduler = sharedScheduler != null ? sharedScheduler
+				: Executors.newSingleThreadScheduledExecutor();
+		//The exchanges between the threads depend on their timing
+		ElitePool elitePool = sharedElitePool != null ? sharedElitePool
+				: eliteSize > 0 && !isDeterministic ? new ElitePool(eliteSize) : null;
+		//A resumed run splits the streams once more per resume, not to replay the same draws
+		int generation = resumed != null ? resumed.getGeneration() + 1 : 0;
+		SplittableRandom streams = new SplittableRandom(seed);
+		for(int g = 0; g < generation; g++) {
+			streams = streams.split();
+		}
+		telemetry = new Telemetry(countThreads);
+		if(isJMX)
+			telemetry.registerMBean(runName);
+		
+		//The verbose mode prints a summary every second, from a thread that does not compute
+		ScheduledFuture<?> reporter = null;
+		if(isVerbose) {
+			reporter = scheduler.scheduleAtFixedRate(new Runnable() {
+				public void run() {
+					System.out.println(telemetry);
+				}
+			}, 1, 1, TimeUnit.SECONDS);
+		}
+		
+		//The workers poll the deadline, the time limit needs no timer; a resumed run only has the time left
+		final long elapsedBefore = resumed != null ? resumed.getElapsedNanos() : 0;
+		Deadline stopSignal = deadline != null ? deadline : Deadline.none();
+		final Deadline runDeadline = maxIterations == 0
+				? stopSignal.child(Math.max(0, TimeUnit.SECONDS.toNanos(timeMax) - elapsedBefore), TimeUnit.NANOSECONDS)
+				: stopSignal.child();
+		SolutionBoard board = new SolutionBoard(runDeadline, targetOF, listener);
+		deadline = runDeadline;
 		
-		//Threads that compute
+		//The workers beyond the count chosen by the tuner park between their descents
+		ThreadTuner tuner = null;
+		ScheduledFuture<?> tuning = null;
+		if(isAutoThreads) {
+			tuner = new ThreadTuner(countThreads, telemetry, board, runDeadline);
+			telemetry.setTuner(tuner);
+			tuning = scheduler.scheduleWithFixedDelay(tuner, ThreadTuner.TICK, ThreadTuner.TICK,
+					TimeUnit.MILLISECONDS);
+		}
+		
+		//Threads that compute, they publish their tours on the board only
 		for(int i = 0; i < countThreads; i++) {
-			Solution currentSolution = new Solution();
-			solutions.add(currentSolution);
-			
 			ThreadedSolutionFinder solutionFinder =
-					new ThreadedSolutionFinder(isVerbose, i, instance, currentSolution);
+					new ThreadedSolutionFinder(isVerbose, i, instance, null, createLocalSearch(),
+							TourConstructor.create(construction, instance), isIterated, elitePool, eliteRate,
+							telemetry);
+			solutionFinder.setMaxIterations(maxIterations);
+			solutionFinder.setDeadline(runDeadline);
+			solutionFinder.setBoard(board);
+			if(resumed != null)
+				solutionFinder.setStartTour(resumed.getTour());
+			solutionFinder.setTuner(tuner);
+			//Split in the order of the threads, so that thread i always gets the same stream
+			if(isDeterministic)
+				solutionFinder.setRandom(new SplittableRandomAdapter(streams.split()));
 			
-			threads.add(Executors.callable(solutionFinder));
+			tasks.add(new WorkerTask(solutionFinder, runDeadline));
+		}
+		
+		/* The checkpoints are written by the scheduler: the workers only
+		 * publish on the board, which is read without stopping them */
+		ScheduledFuture<?> checkpointer = null;
+		if(checkpointFile != null) {
+			final int checkpointGeneration = generation;
+			checkpointer = scheduler.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					writeCheckpoint(board, elapsedBefore + runDeadline.getElapsedNanos(), checkpointGeneration);
+				}
+			}, checkpointPeriod, checkpointPeriod, TimeUnit.SECONDS);
+		}
+		
+		//The lower bound runs on a spare thread, beside the workers
+		OneTreeBound lowerBound = null;
+		Thread boundThread = null;
+		if(isLowerBound) {
+			lowerBound = new OneTreeBound(instance,
+					instance.getCandidateLists(Math.min(BOUND_CANDIDATES, instance.getN() - 1)), runDeadline, board,
+					targetGap);
+			boundThread = new Thread(lowerBound, "lower-bound");
+			boundThread.setDaemon(true);
+			boundThread.start();
 		}
 		
 		long startTime = System.currentTimeMillis();
+		for(WorkerTask task : tasks) {
+			task.future = workers.submit(task);
+		}
 		
-		/* Execute and then wait that all threads have finished */
+		/* Wait that all threads have finished */
 		try {
-			executor.invokeAll(threads);
-
+			for(WorkerTask task : tasks) {
+				task.await();
+			}
 		} catch (InterruptedException e) {
-			e.printStackTrace();
-			return null;
+			//The tours published so far are complete, return the best one
+			Thread.currentThread().interrupt();
+			return board.getBest();
+		} finally {
+			/* The workers are done, unless one failed or the wait was
+			 * interrupted: the others stop at the deadline, those not
+			 * started yet never run, so that none keeps a thread of a
+			 * shared pool after the run. The bound is over too */
+			runDeadline.stop();
+			for(WorkerTask task : tasks) {
+				task.cancel();
+			}
+			deadline = null;
+			if(boundThread != null)
+				joinBound(boundThread);
+			if(reporter != null)
+				reporter.cancel(false);
+			if(tuning != null)
+				tuning.cancel(false);
+			//The last checkpoint holds the final tour, even of an interrupted run
+			if(checkpointer != null) {
+				checkpointer.cancel(false);
+				writeCheckpoint(board, elapsedBefore + runDeadline.getElapsedNanos(), generation);
+			}
+			if(sharedWorkers == null)
+				workers.shutdownNow();
+			if(sharedScheduler == null)
+				scheduler.shutdownNow();
+			telemetry.stop();
+			telemetry.unregisterMBean();
 		}
 		
 		if(isVerbose) {
 			long time = System.currentTimeMillis() - startTime;
 			System.out.println("---------------------------------------");
 			System.out.println("All tasks terminated in " + time / 1000.f + "s");
+			System.out.println(telemetry);
+			if(lowerBound != null)
+				System.out.println("Lower bound: " + lowerBound.getBound() + " after "
+						+ lowerBound.getIterations() + " iterations");
+			if(tuner != null)
+				System.out.println(tuner);
 		}
+		exportTelemetry();
 		
-		//Iterate over all the found solutions
-		Solution bestSolution = solutions.get(0);
-		for(int i = 1; i < countThreads; i++) {
-			Solution currentSolution = solutions.get(i);
-			if(currentSolution.getOF() < bestSolution.getOF())
-				bestSolution = currentSolution;
+		Solution best = board.getBest();
+		if(best != null && lowerBound != null)
+			best.setLowerBound(lowerBound.getBound());
+		if(best != null && tuner != null)
+			best.setThreads(tuner.getActive());
+		return best;
+	}
+	
+	/* Read the checkpoint of a previous run of the same instance
+	 * @throws UncheckedIOException if it cannot be read
+	 */
+	private Checkpoint readCheckpoint(String file) {
+		Checkpoint checkpoint;
+		try {
+			checkpoint = Checkpoint.read(Paths.get(file));
+		} catch (IOException e) {
+			throw new UncheckedIOException("cannot read " + file, e);
+		}
+		if(checkpoint.getTour().length != instance.getN())
+			throw new IllegalArgumentException("The checkpoint " + file + " holds " + checkpoint.getTour().length
+					+ " cities instead of " + instance.getN());
+		return checkpoint;
+	}
+	
+	/* Save the best tour of the run, if any. A failure only costs this
+	 * checkpoint, the previous one is left intact
+	 */
+	private synchronized void writeCheckpoint(SolutionBoard board, long elapsedNanos, int generation) {
+		Solution best = board.getBest();
+		if(best == null)
+			return;
+		try {
+			Checkpoint.of(best, elapsedNanos, isDeterministic, seed, generation).write(Paths.get(checkpointFile));
+		} catch (IOException e) {
+			System.err.println("Cannot write the checkpoint: " + e);
+		}
+	}
+	
+	//Wait for the end of the lower bound, which polls the deadline
+	private static void joinBound(Thread boundThread) {
+		try {
+			boundThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	@Override
+	public void stop() {
+		Deadline current = deadline;
+		if(current != null)
+			current.stop();
+	}
+	
+	@Override
+	public void setExecutors(ExecutorService workers, ScheduledExecutorService scheduler) {
+		this.sharedWorkers = workers;
+		this.sharedScheduler = scheduler;
+	}
+	
+	@Override
+	public void setInstance(Instance instance) {
+		this.sharedInstance = instance;
+	}
+	
+	/* Share the elite tours with searches beyond this run, e.g. with the
+	 * other processes of a distributed run, instead of a pool of its own
+	 * @param elitePool The pool, null to go back to a pool per run
+	 */
+	void setElitePool(ElitePool elitePool) {
+		this.sharedElitePool = elitePool;
+	}
+	
+	/* @return the metrics of the last run, null before the first one
+	 */
+	public Telemetry getTelemetry() {
+		return telemetry;
+	}
+	
+	//Write the metrics to the configured files, a failure only costs the files
+	private void exportTelemetry() {
+		try {
+			if(telemetryCSV != null)
+				TelemetryExporter.writeCSV(telemetry, Paths.get(telemetryCSV + "-workers.csv"),
+						Paths.get(telemetryCSV + "-trace.csv"));
+			if(telemetryJSON != null)
+				TelemetryExporter.writeJSON(telemetry, Paths.get(telemetryJSON));
+		} catch (IOException e) {
+			System.err.println("Cannot write the telemetry: " + e);
+		}
+	}
+	
+	/* A thread of the run. Cancelling it prevents it from running if
+	 * it has not started yet; a running thread stops at the deadline
+	 * instead, so that no interrupt reaches the threads of a shared
+	 * pool. The task is over once await returns, with its tour
+	 * published if it ran at all. A failure of the thread ends the run,
+	 * so that the others do not search until the time limit for a run
+	 * that fails anyway
+	 */
+	private static class WorkerTask implements Runnable {
+		private static final int NEW = 0, RUNNING = 1, DONE = 2;
+		
+		private final ThreadedSolutionFinder finder;
+		private final Deadline runDeadline;
+		private final AtomicInteger state = new AtomicInteger(NEW);
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Future<?> future;
+		private volatile RuntimeException failure;
+		
+		WorkerTask(ThreadedSolutionFinder finder, Deadline runDeadline) {
+			this.finder = finder;
+			this.runDeadline = runDeadline;
+		}
+		
+		@Override
+		public void run() {
+			if(!state.compareAndSet(NEW, RUNNING))
+				return;
+			try {
+				finder.run();
+			} catch (RuntimeException e) {
+				failure = e;
+				runDeadline.stop();
+			} finally {
+				state.set(DONE);
+				done.countDown();
+			}
+		}
+		
+		void cancel() {
+			if(state.compareAndSet(NEW, DONE))
+				done.countDown();
+			future.cancel(false);
 		}
 		
-		return bestSolution;
+		//Wait for the end of the thread, and forward its failure
+		void await() throws InterruptedException {
+			done.await();
+			if(failure != null)
+				throw failure;
+		}
+	}
+	
+	/* Each thread has its own local search, since a local search
+	 * keeps its buffers between two descents
+	 */
+	private LocalSearch createLocalSearch() {
+		switch(localSearch) {
+		case "swap":
+			return new SwapSearch(instance, candidates, isParallelScan ? ForkJoinPool.commonPool() : null);
+		case "2opt":
+			return new TwoOptSearch(instance, candidates);
+		case "lk":
+			return new LinKernighanSearch(instance, candidates, maxDepth);
+		default:
+			throw new IllegalArgumentException("Unknown local search: " + localSearch);
+		}
 	}
 }
@@ -0,0 +1,114 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import polytech.tours.di.parallel.tsp.AnytimeAlgorithm;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.InstanceReader;
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.SharedInstanceAlgorithm;
+import polytech.tours.di.parallel.tsp.Solution;
+
+/* The run of the solvers timed by maxcpu: the loading of the instance,
+ * unless it is shared (setInstance), the keys they share with
+ * Algorithm42 (instance, maxcpu, verbose and targetof, read before
+ * solve), the deadline of the run and stop().
+ * A subclass reads its own keys, prepares its search and then starts
+ * the clock with startDeadline, so that the loading and the candidate
+ * lists do not count against maxcpu.
+ *
+ * A stop may come while the instance loads, before the deadline of the
+ * run exists: the run first publishes an untimed deadline, the parent
+ * of the one startDeadline creates, so that the stop reaches both
+ */
+public abstract class AnytimeSolver implements AnytimeAlgorithm, SharedInstanceAlgorithm {
+	protected Instance instance;
+	protected long timeMax;
+	protected boolean isVerbose;
+	protected double targetOF;
+	//Expires with stop() during the current run, read by the thread of the run only
+	private Deadline stopSignal;
+	//The end of the current run, the stop signal until it starts
+	private volatile Deadline deadline;
+	//The instance of the runs if shared with other runs, null to read it
+	private Instance sharedInstance;
+
+	@Override
+	public Solution run(Properties config) {
+		return run(config, null);
+	}
+
+	@Override
+	public Solution run(Properties config, ProgressListener listener) {
+		Deadline signal = Deadline.none();
+		stopSignal = signal;
+		deadline = signal;
+		try {
+			if(sharedInstance != null) {
+				instance = sharedInstance;
+			} else {
+				InstanceReader ir = new InstanceReader();
+				ir.configure(config);
+				ir.buildInstance(config.getProperty("instance"));
+				instance = ir.getInstance();
+			}
+
+			timeMax = Long.valueOf(config.getProperty("maxcpu"));
+			isVerbose = Boolean.valueOf(config.getProperty("verbose"));
+			//Stop as soon as a tour costs at most this (no target by default)
+			String target = config.getProperty("targetof");
+			targetOF = target != null ? Double.valueOf(target) : Double.NEGATIVE_INFINITY;
+			return solve(config, listener);
+		} finally {
+			stopSignal = null;
+			deadline = null;
+		}
+	}
+
+	/* Search the instance until the deadline of the run
+	 * @param config The configuration, for the keys of the solver
+	 * @param listener Receives the improvements, may be null
+	 * @return the best tour found, null if none
+	 */
+	protected abstract Solution solve(Properties config, ProgressListener listener);
+
+	/* Start the clock of the run, once the search is prepared
+	 * @return the deadline of the run, after maxcpu or at stop()
+	 */
+	protected Deadline startDeadline() {
+		Deadline runDeadline = stopSignal.child(timeMax, TimeUnit.SECONDS);
+		deadline = runDeadline;
+		return runDeadline;
+	}
+
+	@Override
+	public void setInstance(Instance instance) {
+		this.sharedInstance = instance;
+	}
+
+	@Override
+	public void stop() {
+		Deadline current = deadline;
+		if(current != null)
+			current.stop();
+	}
+
+	/* The count of threads of the key maxthreads, all the cores for 0.
+	 * Only Algorithm42 tunes its count of threads: "auto" takes all the
+	 * cores too
+	 */
+	protected static int countThreads(Properties config) {
+		String threads = config.getProperty("maxthreads");
+		int count = threads.equals("auto") ? 0 : Integer.valueOf(threads);
+		return count > 0 ? count : Runtime.getRuntime().availableProcessors();
+	}
+
+	/* The count of candidates of the key candidates, at most n - 1
+	 * @param defaultCount The count if the key is 0 or missing
+	 */
+	protected int countCandidates(Properties config, int defaultCount) {
+		int k = Integer.valueOf(config.getProperty("candidates", "0"));
+		return Math.min(k > 0 ? k : defaultCount, instance.getN() - 1);
+	}
+}
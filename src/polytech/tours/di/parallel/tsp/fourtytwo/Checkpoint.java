@@ -0,0 +1,170 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import polytech.tours.di.parallel.tsp.Solution;
+
+/* The state of an interrupted run: the best tour, the time already
+ * spent and where the random streams stand, enough to go on from the
+ * tour rather than from new start tours.
+ *
+ * SplittableRandom does not expose its state: the streams of a
+ * deterministic run are split from the seed, and a resumed run splits
+ * them once more per generation (count of resumes) so that it does not
+ * replay the draws of the previous one. The seed and the generation
+ * are thus the state of the streams, read back by the resumed run.
+ * The layout, like the one of InstanceCache, is
+ * int magic, int version, int n, int generation, double of,
+ * long elapsed (ns), long seed, int deterministic (0 or 1), int unused,
+ * long CRC32, int[n] tour
+ */
+public class Checkpoint {
+	//The first bytes of a checkpoint ("TSPK")
+	private static final int MAGIC = 0x5453504B;
+	private static final int VERSION = 2;
+	private static final int HEADER = 56;
+
+	private final int[] tour;
+	private final double of;
+	private final long elapsedNanos;
+	private final boolean isDeterministic;
+	private final long seed;
+	private final int generation;
+
+	/* @param tour The cities of the best tour, not copied
+	 * @param elapsedNanos The time spent by the run and the ones it resumes
+	 * @param isDeterministic Whether the streams of the run were split from a seed
+	 * @param seed The seed of the streams, ignored if the run was not deterministic
+	 * @param generation The count of resumes before the run
+	 */
+	public Checkpoint(int[] tour, double of, long elapsedNanos, boolean isDeterministic, long seed, int generation) {
+		this.tour = tour;
+		this.of = of;
+		this.elapsedNanos = elapsedNanos;
+		this.isDeterministic = isDeterministic;
+		this.seed = isDeterministic ? seed : 0;
+		this.generation = generation;
+	}
+
+	public static Checkpoint of(Solution solution, long elapsedNanos, boolean isDeterministic, long seed,
+			int generation) {
+		int[] tour = new int[solution.size()];
+		for(int i = 0; i < tour.length; i++) {
+			tour[i] = solution.get(i);
+		}
+		return new Checkpoint(tour, solution.getOF(), elapsedNanos, isDeterministic, seed, generation);
+	}
+
+	public int[] getTour() {
+		return tour;
+	}
+
+	public double getOF() {
+		return of;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public boolean isDeterministic() {
+		return isDeterministic;
+	}
+
+	//The seed of the streams, 0 if the run was not deterministic
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	/* @throws IOException if the file cannot be read, is damaged or
+	 * does not hold a tour
+	 */
+	public static Checkpoint read(Path path) throws IOException {
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size < HEADER || size > Integer.MAX_VALUE)
+				throw new IOException(path + " is not a checkpoint");
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer) < 0)
+					throw new IOException(path + " is truncated");
+			}
+			buffer.flip();
+
+			int n = buffer.getInt(8);
+			if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || n <= 0 || size != HEADER + 4L * n)
+				throw new IOException(path + " is not a checkpoint");
+			buffer.position(HEADER);
+			if(checksum(buffer) != buffer.getLong(48))
+				throw new IOException(path + " is damaged");
+
+			int[] tour = new int[n];
+			IntBuffer ints = buffer.position(HEADER).slice().asIntBuffer();
+			ints.get(tour);
+			boolean[] seen = new boolean[n];
+			for(int city : tour) {
+				if(city < 0 || city >= n || seen[city])
+					throw new IOException(path + " does not hold a tour");
+				seen[city] = true;
+			}
+			return new Checkpoint(tour, buffer.getDouble(16), buffer.getLong(24), buffer.getInt(40) != 0,
+					buffer.getLong(32), buffer.getInt(12));
+		}
+	}
+
+	/* Write to a temporary file first, then rename it, so that an
+	 * interrupted write leaves the previous checkpoint intact
+	 */
+	public void write(Path path) throws IOException {
+		int n = tour.length;
+		ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(HEADER + 4L * n));
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(generation);
+		buffer.putDouble(of).putLong(elapsedNanos).putLong(seed).putInt(isDeterministic ? 1 : 0).putInt(0).putLong(0);
+		for(int city : tour) {
+			buffer.putInt(city);
+		}
+		buffer.position(HEADER);
+		buffer.putLong(48, checksum(buffer));
+		buffer.position(0);
+
+		//In the same directory, so that the rename stays atomic
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				//The rename must not reach the disk before the content
+				channel.force(false);
+			}
+			try {
+				Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch(AtomicMoveNotSupportedException e) {
+				Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	//CRC32 of the bytes from the position of the buffer to its end
+	private static long checksum(ByteBuffer buffer) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.duplicate());
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,85 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.concurrent.TimeUnit;
+
+/* The end of a run, shared by its workers and their local searches.
+ *
+ * The searches poll it once per batch of moves (a row of swaps, a
+ * block of cities of the don't-look bit queue) rather than once per
+ * move: a poll is a volatile read, plus System.nanoTime when the run
+ * has a time limit. Stopping it ends the run early from any thread,
+ * without interrupting the threads, which may belong to a shared pool
+ */
+public class Deadline {
+	private final long startTime = System.nanoTime();
+	//End of the run in System.nanoTime, meaningless if not timed
+	private final long endTime;
+	private final boolean isTimed;
+	private volatile boolean isStopped;
+	//Expires this one too, null for none
+	private final Deadline parent;
+	
+	private Deadline(boolean isTimed, long duration, Deadline parent) {
+		this.isTimed = isTimed;
+		this.endTime = startTime + duration;
+		this.parent = parent;
+	}
+	
+	/* @return a deadline expiring after the given time
+	 */
+	public static Deadline after(long duration, TimeUnit unit) {
+		return new Deadline(true, unit.toNanos(duration), null);
+	}
+	
+	/* @return a deadline expiring only when stopped
+	 */
+	public static Deadline none() {
+		return new Deadline(false, 0, null);
+	}
+	
+	/* @return a deadline expiring after the given time, or with this
+	 * one if earlier, e.g. the time slice of a part of the run
+	 */
+	public Deadline child(long duration, TimeUnit unit) {
+		return new Deadline(true, unit.toNanos(duration), this);
+	}
+	
+	/* @return a deadline expiring only when stopped or with this one
+	 */
+	public Deadline child() {
+		return new Deadline(false, 0, this);
+	}
+	
+	/* @return true once the time is over or the deadline stopped
+	 */
+	public boolean isExpired() {
+		if(isStopped)
+			return true;
+		if((isTimed && System.nanoTime() - endTime >= 0) || (parent != null && parent.isExpired())) {
+			isStopped = true;
+			return true;
+		}
+		return false;
+	}
+	
+	//End the run now
+	public void stop() {
+		isStopped = true;
+	}
+	
+	/* @return the time left (ns), Long.MAX_VALUE if the deadline is
+	 * not timed and 0 once expired
+	 */
+	public long getRemainingNanos() {
+		if(isExpired())
+			return 0;
+		long remaining = isTimed ? Math.max(0, endTime - System.nanoTime()) : Long.MAX_VALUE;
+		return parent != null ? Math.min(remaining, parent.getRemainingNanos()) : remaining;
+	}
+	
+	/* @return the time since the creation of the deadline (ns)
+	 */
+	public long getElapsedNanos() {
+		return System.nanoTime() - startTime;
+	}
+}
@@ -0,0 +1,297 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.DenseDistanceMatrix;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.Solution;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+import polytech.tours.di.parallel.tsp.construction.TourConstructor;
+
+/* Spatial decomposition for the instances of 10k cities and more:
+ *  1. Karp partitioning of the cities in clusters of at most
+ *     clustersize cities (SpatialPartition), in O(n log n)
+ *  2. each cluster is solved as a sub-instance by an iterated
+ *     Lin-Kernighan worker (ThreadedSolutionFinder) on a work-stealing
+ *     pool, within a time slice sharing SUBSOLVE_SHARE of maxcpu
+ *  3. the clusters are visited in the order of a tour of their
+ *     centroids; each cluster tour is opened at the edge that joins
+ *     best the previous cluster and the centroid of the next one
+ *  4. the Lin-Kernighan search of the whole tour starts only from the
+ *     cities whose candidates lie in another cluster and from windows
+ *     around the junctions: the insides of the clusters are already
+ *     local optima
+ * The run ends after the refinement, usually well before maxcpu.
+ *
+ * Keys: instance, maxcpu, maxthreads, verbose, candidates (default 8),
+ * lkdepth and targetof as for Algorithm42, plus clustersize (default
+ * 1000)
+ */
+public class DecompositionSolver extends AnytimeSolver {
+	private static final int DEFAULT_CANDIDATES = 8;
+	//Share of maxcpu given to the clusters, the rest is left to the refinement
+	private static final double SUBSOLVE_SHARE = 0.5;
+	//Count of positions on each side of a junction refined by the search
+	private static final int WINDOW = 25;
+	//Smallest cluster that the local searches can improve
+	private static final int MIN_CLUSTER = 8;
+	
+	@Override
+	protected Solution solve(Properties config, ProgressListener listener) {
+		if(!instance.hasCoordinates())
+			throw new IllegalArgumentException("The decomposition needs the coordinates of the cities");
+		int countThreads = countThreads(config);
+		int k = countCandidates(config, DEFAULT_CANDIDATES);
+		int maxDepth = Integer.valueOf(config.getProperty("lkdepth", "10"));
+		int clusterSize = Integer.valueOf(config.getProperty("clustersize", "1000"));
+		
+		Deadline runDeadline = startDeadline();
+		SolutionBoard board = new SolutionBoard(runDeadline, targetOF, listener);
+		
+		long start = System.nanoTime();
+		List<int[]> clusters = SpatialPartition.split(instance, clusterSize);
+		long partitioned = System.nanoTime();
+		
+		//Solve the clusters, each within its time slice
+		long slice = (long)(SUBSOLVE_SHARE * TimeUnit.SECONDS.toNanos(timeMax) * countThreads / clusters.size());
+		int[][] subTours = new int[clusters.size()][];
+		ForkJoinPool pool = new ForkJoinPool(countThreads);
+		try {
+			List<ClusterTask> tasks = new ArrayList<ClusterTask>(clusters.size());
+			for(int c = 0; c < clusters.size(); c++) {
+				tasks.add(new ClusterTask(instance, clusters.get(c), k, maxDepth, runDeadline, slice, subTours, c));
+			}
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+				
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			pool.shutdown();
+		}
+		long solved = System.nanoTime();
+		
+		Tour tour = new Tour(stitch(instance, clusters, subTours));
+		tour.setOF(TSPCostCalculator.calcOF(instance, tour));
+		board.offer(0, tour, tour.getOF());
+		double stitchedOF = tour.getOF();
+		long stitched = System.nanoTime();
+		
+		refine(instance, clusters, tour, instance.getCandidateLists(k), maxDepth, runDeadline);
+		board.offer(0, tour, TSPCostCalculator.calcOF(instance, tour));
+		long refined = System.nanoTime();
+		
+		if(isVerbose) {
+			System.out.println(clusters.size() + " clusters in " + (partitioned - start) / 1e9 + "s");
+			System.out.println("Clusters solved in " + (solved - partitioned) / 1e9 + "s");
+			System.out.println("Stitched in " + (stitched - solved) / 1e9 + "s: " + stitchedOF);
+			System.out.println("Refined in " + (refined - stitched) / 1e9 + "s: " + board.getBest().getOF());
+		}
+		return board.getBest();
+	}
+	
+	/* Join the tours of the clusters in the order of a tour of their
+	 * centroids
+	 * @return the cities of the whole tour
+	 */
+	private static int[] stitch(Instance instance, List<int[]> clusters, int[][] subTours) {
+		int m = clusters.size();
+		double[][] centroids = new double[m][2];
+		for(int c = 0; c < m; c++) {
+			for(int city : clusters.get(c)) {
+				centroids[c][0] += instance.getX(city);
+				centroids[c][1] += instance.getY(city);
+			}
+			centroids[c][0] /= clusters.get(c).length;
+			centroids[c][1] /= clusters.get(c).length;
+		}
+		int[] order = orderClusters(centroids);
+		
+		int[] cities = new int[instance.getN()];
+		int position = 0;
+		for(int o = 0; o < m; o++) {
+			int[] cycle = subTours[order[o]];
+			int length = cycle.length;
+			int previous = position > 0 ? cities[position - 1] : -1;
+			double[] nextCentroid = centroids[order[(o + 1) % m]];
+			
+			/* Open the cycle at the edge (u, v) minimizing the cost of the
+			 * junctions minus the removed edge: the path goes from v
+			 * forward to u, or from u backward to v */
+			int bestEdge = 0;
+			boolean bestForward = true;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for(int e = 0; e < length; e++) {
+				int u = cycle[e];
+				int v = cycle[(e + 1) % length];
+				double removed = length > 1 ? instance.getDistance(u, v) : 0;
+				double forward = entryCost(instance, previous, v) + exitCost(instance, u, nextCentroid) - removed;
+				double backward = entryCost(instance, previous, u) + exitCost(instance, v, nextCentroid) - removed;
+				if(forward < bestCost) {
+					bestCost = forward;
+					bestEdge = e;
+					bestForward = true;
+				}
+				if(backward < bestCost) {
+					bestCost = backward;
+					bestEdge = e;
+					bestForward = false;
+				}
+			}
+			
+			for(int l = 0; l < length; l++) {
+				int index = bestForward ? (bestEdge + 1 + l) % length : (bestEdge - l + length) % length;
+				cities[position++] = cycle[index];
+			}
+		}
+		return cities;
+	}
+	
+	private static double entryCost(Instance instance, int previous, int city) {
+		return previous >= 0 ? instance.getDistance(previous, city) : 0;
+	}
+	
+	private static double exitCost(Instance instance, int city, double[] centroid) {
+		return Math.hypot(instance.getX(city) - centroid[0], instance.getY(city) - centroid[1]);
+	}
+	
+	/* A short tour of the centroids (greedy edge and 2-opt), or the
+	 * order of the partition when there are too few clusters
+	 * @return the clusters in visiting order
+	 */
+	private static int[] orderClusters(double[][] centroids) {
+		int m = centroids.length;
+		int[] order = new int[m];
+		for(int c = 0; c < m; c++) {
+			order[c] = c;
+		}
+		if(m < MIN_CLUSTER)
+			return order;
+		
+		double[][] matrix = new double[m][m];
+		for(int i = 0; i < m; i++) {
+			for(int j = 0; j < m; j++) {
+				matrix[i][j] = Math.hypot(centroids[i][0] - centroids[j][0], centroids[i][1] - centroids[j][1]);
+			}
+		}
+		Instance centroidInstance = new Instance(centroids, new DenseDistanceMatrix(matrix));
+		Tour tour = new Tour(m);
+		TourConstructor.create("greedy", centroidInstance).build(tour, null);
+		tour.setOF(TSPCostCalculator.calcOF(centroidInstance, tour));
+		new TwoOptSearch(centroidInstance, centroidInstance.getCandidateLists(Math.min(DEFAULT_CANDIDATES, m - 1)))
+				.optimize(tour);
+		tour.copyTo(order);
+		return order;
+	}
+	
+	/* Run the Lin-Kernighan search on the whole tour from the cities
+	 * next to another cluster and the ones around the junctions
+	 */
+	private static void refine(Instance instance, List<int[]> clusters, Tour tour, CandidateLists candidates,
+			int maxDepth, Deadline deadline) {
+		int n = instance.getN();
+		int[] clusterOf = new int[n];
+		for(int c = 0; c < clusters.size(); c++) {
+			for(int city : clusters.get(c)) {
+				clusterOf[city] = c;
+			}
+		}
+		
+		boolean[] isDirty = new boolean[n];
+		int[] dirty = new int[n];
+		int count = 0;
+		for(int city = 0; city < n; city++) {
+			for(int r = 0; r < candidates.getK(); r++) {
+				if(clusterOf[candidates.get(city, r)] != clusterOf[city]) {
+					isDirty[city] = true;
+					dirty[count++] = city;
+					break;
+				}
+			}
+		}
+		for(int i = 0; i < n; i++) {
+			int next = i + 1 == n ? 0 : i + 1;
+			if(clusterOf[tour.getCity(i)] == clusterOf[tour.getCity(next)])
+				continue;
+			for(int w = -WINDOW; w <= WINDOW; w++) {
+				int city = tour.getCity(Math.floorMod(i + w, n));
+				if(!isDirty[city]) {
+					isDirty[city] = true;
+					dirty[count++] = city;
+				}
+			}
+		}
+		
+		LocalSearch search = new LinKernighanSearch(instance, candidates, maxDepth);
+		search.setDeadline(deadline);
+		search.optimize(tour, dirty, count);
+	}
+	
+	/* Solve a cluster as a sub-instance, the result written as a cycle
+	 * of cities of the whole instance
+	 */
+	private static class ClusterTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final Instance instance;
+		private final int[] cluster;
+		private final int k, maxDepth;
+		private final Deadline deadline;
+		private final long slice;
+		private final int[][] subTours;
+		private final int index;
+		
+		/* @param slice The time given to the cluster (ns), counted from
+		 * the beginning of the task
+		 */
+		ClusterTask(Instance instance, int[] cluster, int k, int maxDepth, Deadline deadline, long slice,
+				int[][] subTours, int index) {
+			this.instance = instance;
+			this.cluster = cluster;
+			this.k = k;
+			this.maxDepth = maxDepth;
+			this.deadline = deadline;
+			this.slice = slice;
+			this.subTours = subTours;
+			this.index = index;
+		}
+		
+		@Override
+		protected void compute() {
+			int m = cluster.length;
+			if(m < MIN_CLUSTER) {
+				subTours[index] = cluster;
+				return;
+			}
+			
+			Instance sub = instance.subInstance(cluster);
+			CandidateLists candidates = sub.getCandidateLists(Math.min(k, m - 1));
+			Deadline sliceDeadline = deadline.child(slice, TimeUnit.NANOSECONDS);
+			SolutionBoard board = new SolutionBoard(sliceDeadline, Double.NEGATIVE_INFINITY, null);
+			ThreadedSolutionFinder finder = new ThreadedSolutionFinder(false, 0, sub, null,
+					new LinKernighanSearch(sub, candidates, maxDepth), TourConstructor.create("greedy", sub), true,
+					null, 0, null);
+			finder.setDeadline(sliceDeadline);
+			finder.setBoard(board);
+			finder.run();
+			
+			Solution best = board.getBest();
+			int[] cycle = new int[m];
+			for(int i = 0; i < m; i++) {
+				cycle[i] = cluster[best.get(i)];
+			}
+			subTours[index] = cycle;
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
+import polytech.tours.di.parallel.tsp.Solution;
+
+/* The messages between DistributedSolver and DistributedWorker, over
+ * one TCP connection per worker.
+ *
+ * The coordinator opens with the setup: magic, version, worker id, the
+ * search settings (count, then key and value pairs), the time of the
+ * search (s) and the coordinates (n, then x and y of each city). Then
+ * each message is a type byte:
+ * TOUR, double of, TourDelta: an improved tour of the worker, or the
+ * incumbent of the run sent to a worker
+ * STOP: the run is over, the worker sends its last tour
+ * DONE: the last tour of the worker was sent
+ */
+final class DistributedProtocol {
+	private static final int MAGIC = 0x54535044;	//"TSPD"
+	private static final int VERSION = 1;
+
+	static final byte TOUR = 1;
+	static final byte STOP = 2;
+	static final byte DONE = 3;
+
+	/* The settings of Algorithm42 a worker takes from the coordinator;
+	 * the others stay local (files, seed, JMX) or are replaced
+	 */
+	static final String[] SETTINGS = {"maxthreads", "localsearch", "parallelscan", "construction", "perturbation",
+			"lkdepth", "elitesize", "eliterate", "candidates", "matrix", "lazythreshold", "cachedrows"};
+
+	private DistributedProtocol() {
+	}
+
+	static void writeSetup(DataOutputStream out, int workerId, Properties settings, long maxcpu,
+			double[][] coordinates) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(workerId);
+		out.writeInt(settings.size());
+		for(String key : settings.stringPropertyNames()) {
+			out.writeUTF(key);
+			out.writeUTF(settings.getProperty(key));
+		}
+		out.writeLong(maxcpu);
+		out.writeInt(coordinates.length);
+		for(double[] city : coordinates) {
+			out.writeDouble(city[0]);
+			out.writeDouble(city[1]);
+		}
+		out.flush();
+	}
+
+	/* The setup received by a worker
+	 */
+	static class Setup {
+		int workerId;
+		Properties settings = new Properties();
+		long maxcpu;
+		double[][] coordinates;
+
+		static Setup read(DataInputStream in) throws IOException {
+			if(in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException("Not a coordinator of this version");
+			Setup setup = new Setup();
+			setup.workerId = in.readInt();
+			for(int count = in.readInt(); count > 0; count--) {
+				setup.settings.setProperty(in.readUTF(), in.readUTF());
+			}
+			setup.maxcpu = in.readLong();
+			int n = in.readInt();
+			if(n <= 0)
+				throw new IOException("Invalid count of cities: " + n);
+			setup.coordinates = new double[n][2];
+			for(double[] city : setup.coordinates) {
+				city[0] = in.readDouble();
+				city[1] = in.readDouble();
+			}
+			return setup;
+		}
+	}
+
+	static void writeTour(DataOutputStream out, TourDelta delta, int[] tour, double of) throws IOException {
+		out.writeByte(TOUR);
+		out.writeDouble(of);
+		delta.write(out, tour);
+		out.flush();
+	}
+
+	static void writeSignal(DataOutputStream out, byte type) throws IOException {
+		out.writeByte(type);
+		out.flush();
+	}
+
+	static int[] toArray(Solution solution) {
+		int[] tour = new int[solution.size()];
+		for(int i = 0; i < tour.length; i++) {
+			tour[i] = solution.get(i);
+		}
+		return tour;
+	}
+}
@@ -0,0 +1,317 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.Solution;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* Coordinator of a search spread over several processes, on one host
+ * or several: each DistributedWorker runs Algorithm42 on the cores of
+ * its own JVM.
+ *
+ * The coordinator loads the instance, listens on a TCP socket and
+ * sends every worker that connects the coordinates, the settings of
+ * the search and the time left. The workers send back their improved
+ * tours as TourDelta runs, at most every 100 ms; the coordinator keeps
+ * the best one on a SolutionBoard and sends it to the workers that
+ * know no better tour, which add it to the elite tours their threads
+ * restart from. At the end it asks the workers for their last tour.
+ * It can start the workers itself, as JVMs of the same host reached
+ * over the loopback interface
+ */
+public class DistributedSolver extends AnytimeSolver {
+	//Time between two broadcasts of the incumbent (ms)
+	private static final long BROADCAST_PERIOD = 100;
+	//Time given to the workers to send their last tour once stopped (ms)
+	private static final long STOP_GRACE = 5_000;
+	//Time between two polls of the deadline while waiting for workers (ms)
+	private static final int ACCEPT_POLL = 50;
+
+	private double[][] coordinates;
+	//The settings sent to the workers
+	private Properties settings;
+	//The last incumbent sent, read by the broadcasting thread only
+	private Solution broadcastSolution;
+	private int[] broadcastTour;
+
+	//The instance is loaded here only, the workers get its coordinates
+	@Override
+	protected Solution solve(Properties config, ProgressListener listener) {
+		if(!instance.hasCoordinates())
+			throw new IllegalArgumentException("The workers need the coordinates of the cities");
+		coordinates = new double[instance.getN()][];
+		for(int i = 0; i < coordinates.length; i++) {
+			coordinates[i] = new double[] {instance.getX(i), instance.getY(i)};
+		}
+
+		//Address and port to listen on: the loopback only by default, any free port
+		String address = config.getProperty("address", "127.0.0.1");
+		int port = Integer.valueOf(config.getProperty("port", "0"));
+		//Count of workers started by the coordinator on this host
+		int spawn = Integer.valueOf(config.getProperty("spawn", "0"));
+		//Count of workers accepted, those started included
+		int countWorkers = Integer.valueOf(config.getProperty("workers", String.valueOf(Math.max(1, spawn))));
+
+		//maxthreads is the count of threads of each worker
+		settings = new Properties();
+		for(String key : DistributedProtocol.SETTINGS) {
+			if(config.getProperty(key) != null)
+				settings.setProperty(key, config.getProperty(key));
+		}
+
+		Deadline runDeadline = startDeadline();
+		try(ServerSocket server = new ServerSocket(port, countWorkers, InetAddress.getByName(address))) {
+			return coordinate(server, spawn, countWorkers, new SolutionBoard(runDeadline, targetOF, listener),
+					runDeadline);
+		} catch (IOException e) {
+			throw new UncheckedIOException("cannot listen on " + address + ":" + port, e);
+		}
+	}
+
+	private Solution coordinate(ServerSocket server, int spawn, int countWorkers, final SolutionBoard board,
+			Deadline runDeadline) throws IOException {
+		final List<Connection> connections = new CopyOnWriteArrayList<Connection>();
+		List<Process> processes = new ArrayList<Process>();
+		ScheduledExecutorService broadcaster = Executors.newSingleThreadScheduledExecutor();
+		broadcastSolution = null;
+		long startTime = System.currentTimeMillis();
+		if(isVerbose)
+			System.out.println("Waiting for " + countWorkers + " workers on " + server.getLocalSocketAddress());
+
+		try {
+			//Listening on all the interfaces, the loopback reaches this host
+			InetAddress host = server.getInetAddress().isAnyLocalAddress() ? InetAddress.getLoopbackAddress()
+					: server.getInetAddress();
+			for(int i = 0; i < spawn; i++) {
+				processes.add(spawnWorker(host, server.getLocalPort()));
+			}
+			broadcaster.scheduleWithFixedDelay(new Runnable() {
+				public void run() {
+					broadcast(board, connections);
+				}
+			}, BROADCAST_PERIOD, BROADCAST_PERIOD, TimeUnit.MILLISECONDS);
+
+			//The workers join while the run lasts, each with the time left
+			server.setSoTimeout(ACCEPT_POLL);
+			while(!runDeadline.isExpired()) {
+				if(connections.size() == countWorkers) {
+					Thread.sleep(Math.max(1, Math.min(ACCEPT_POLL, runDeadline.getRemainingNanos() / 1_000_000)));
+					continue;
+				}
+				try {
+					Socket socket = server.accept();
+					connections.add(new Connection(connections.size(), socket, board, runDeadline));
+					if(isVerbose)
+						System.out.println("Worker " + (connections.size() - 1) + " joined from "
+								+ socket.getRemoteSocketAddress());
+				} catch (SocketTimeoutException e) {
+					//Poll the deadline again
+				} catch (IOException e) {
+					System.err.println("Cannot set up a worker: " + e);
+				}
+			}
+		} catch (InterruptedException e) {
+			//The tours received so far are complete, collect the last ones
+			runDeadline.stop();
+			Thread.currentThread().interrupt();
+		} finally {
+			broadcaster.shutdownNow();
+			for(Connection connection : connections) {
+				connection.stop();
+			}
+			long end = System.currentTimeMillis() + STOP_GRACE;
+			for(Connection connection : connections) {
+				connection.awaitDone(end - System.currentTimeMillis());
+				connection.close();
+			}
+			for(Process process : processes) {
+				awaitProcess(process, end - System.currentTimeMillis());
+			}
+		}
+
+		if(isVerbose) {
+			long time = System.currentTimeMillis() - startTime;
+			long tours = 0, deltaBytes = 0, fullBytes = 0;
+			for(Connection connection : connections) {
+				tours += connection.countTours;
+				deltaBytes += connection.received.getDeltaBytes() + connection.sent.getDeltaBytes();
+				fullBytes += connection.received.getFullBytes() + connection.sent.getFullBytes();
+			}
+			System.out.println("---------------------------------------");
+			System.out.println(connections.size() + " workers terminated in " + time / 1000.f + "s");
+			System.out.println("Tours received: " + tours + ", tours exchanged in " + deltaBytes + " bytes ("
+					+ fullBytes + " sent whole)");
+		}
+		return board.getBest();
+	}
+
+	/* Send the incumbent to the workers that know no better tour, from
+	 * the broadcasting thread only
+	 */
+	private void broadcast(SolutionBoard board, List<Connection> connections) {
+		Solution best = board.getBest();
+		if(best == null)
+			return;
+		if(best != broadcastSolution) {
+			broadcastSolution = best;
+			broadcastTour = DistributedProtocol.toArray(best);
+		}
+		for(Connection connection : connections) {
+			connection.sendIncumbent(broadcastTour, best.getOF());
+		}
+	}
+
+	//Start a worker in a JVM of this host, with the class path of this one
+	private static Process spawnWorker(InetAddress host, int port) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				DistributedWorker.class.getName(), host.getHostAddress(), String.valueOf(port));
+		builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+		return builder.start();
+	}
+
+	//Wait for the end of a worker started here, kill it past the delay
+	private static void awaitProcess(Process process, long millis) {
+		try {
+			if(!process.waitFor(Math.max(0, millis), TimeUnit.MILLISECONDS))
+				process.destroyForcibly();
+		} catch (InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* The connection to a worker. A thread of its own receives the tours
+	 * of the worker, the writes are serialized on the connection
+	 */
+	private class Connection implements Runnable {
+		final int workerId;
+		private final Socket socket;
+		private final DataInputStream in;
+		private final DataOutputStream out;
+		private final SolutionBoard board;
+		final TourDelta sent = new TourDelta();
+		final TourDelta received = new TourDelta();
+		private final CountDownLatch done = new CountDownLatch(1);
+		//The cost of the best tour the worker knows, guarded by this
+		private double knownOF = Double.POSITIVE_INFINITY;
+		private boolean isStopped;
+		volatile long countTours;
+
+		Connection(int workerId, Socket socket, SolutionBoard board, Deadline runDeadline) throws IOException {
+			this.workerId = workerId;
+			this.socket = socket;
+			this.board = board;
+			socket.setTcpNoDelay(true);
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			//Whole seconds: the STOP message ends the worker in time anyway
+			long maxcpu = (runDeadline.getRemainingNanos() + 999_999_999) / 1_000_000_000;
+			try {
+				DistributedProtocol.writeSetup(out, workerId, settings, maxcpu, coordinates);
+			} catch (IOException e) {
+				socket.close();
+				throw e;
+			}
+			Thread reader = new Thread(this, "worker-" + workerId);
+			reader.setDaemon(true);
+			reader.start();
+		}
+
+		//Receive the tours of the worker until it is done or lost
+		@Override
+		public void run() {
+			try {
+				while(true) {
+					byte type = in.readByte();
+					if(type == DistributedProtocol.DONE)
+						break;
+					if(type != DistributedProtocol.TOUR)
+						throw new IOException("Unknown message " + type);
+					double of = in.readDouble();
+					int[] cities = received.read(in);
+					//A worker of another instance: its tours would end up in the result
+					if(cities.length != instance.getN())
+						throw new IOException("Tour of " + cities.length + " cities instead of " + instance.getN());
+					countTours++;
+					synchronized(this) {
+						knownOF = Math.min(knownOF, of);
+					}
+					if(board.accepts(workerId, of)) {
+						Tour tour = new Tour(cities);
+						tour.setOF(of);
+						board.offer(workerId, tour, of);
+					}
+				}
+			} catch (EOFException e) {
+				System.err.println("Worker " + workerId + " left before the end of the run");
+			} catch (IOException e) {
+				if(!socket.isClosed())
+					System.err.println("Worker " + workerId + " lost: " + e);
+			} finally {
+				done.countDown();
+			}
+		}
+
+		synchronized void sendIncumbent(int[] tour, double of) {
+			if(isStopped || of >= knownOF)
+				return;
+			try {
+				DistributedProtocol.writeTour(out, sent, tour, of);
+				knownOF = of;
+			} catch (IOException e) {
+				//The reader notices the lost worker
+				isStopped = true;
+			}
+		}
+
+		synchronized void stop() {
+			if(isStopped)
+				return;
+			isStopped = true;
+			try {
+				DistributedProtocol.writeSignal(out, DistributedProtocol.STOP);
+			} catch (IOException e) {
+				//The reader notices the lost worker
+			}
+		}
+
+		void awaitDone(long millis) {
+			try {
+				if(!done.await(Math.max(0, millis), TimeUnit.MILLISECONDS))
+					System.err.println("Worker " + workerId + " did not send its last tour in time");
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				//Nothing left to receive
+			}
+		}
+	}
+}
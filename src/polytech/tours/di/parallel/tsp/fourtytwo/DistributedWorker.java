@@ -0,0 +1,198 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import polytech.tours.di.parallel.tsp.InstanceReader;
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.Solution;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* A process of a distributed run, see DistributedSolver. It builds the
+ * instance from the coordinates it receives and runs Algorithm42 on
+ * its cores with the settings of the coordinator, the incumbents of
+ * the run joining the elite tours of its threads.
+ *
+ * The threads never wait for the network: they only leave their best
+ * tour in a reference, sent by a thread of its own at most every
+ * SEND_PERIOD. The main thread receives the incumbents.
+ *
+ * Usage: java polytech.tours.di.parallel.tsp.fourtytwo.DistributedWorker
+ * host port [threads]
+ */
+public class DistributedWorker {
+	//Time between two sendings of the best tour (ms)
+	private static final long SEND_PERIOD = 100;
+
+	private final Socket socket;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final TourDelta sent = new TourDelta();
+	private final TourDelta received = new TourDelta();
+	private final Algorithm42 algorithm = new Algorithm42();
+	//The best tour of the search not sent yet, null if sent
+	private final AtomicReference<Solution> improved = new AtomicReference<Solution>();
+	//The cost of the best tour the coordinator knows, guarded by this
+	private double knownOF = Double.POSITIVE_INFINITY;
+	//Set once the last tour is sent, the coordinator then closes the connection
+	private volatile boolean isDone;
+	//The count of cities of the instance, 0 before the setup
+	private int countCities;
+
+	public DistributedWorker(String host, int port) throws IOException {
+		socket = new Socket(host, port);
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+
+	public static void main(String[] args) {
+		if(args.length < 2) {
+			System.err.println("Usage: DistributedWorker host port [threads]");
+			System.exit(1);
+		}
+		try {
+			new DistributedWorker(args[0], Integer.valueOf(args[1])).run(args.length > 2 ? args[2] : null);
+		} catch (IOException e) {
+			System.err.println("Worker stopped: " + e);
+			System.exit(1);
+		}
+	}
+
+	/* Search until the coordinator stops the run or closes the connection
+	 * @param threads The count of threads, null for the one of the coordinator
+	 */
+	public void run(String threads) throws IOException {
+		try {
+			DistributedProtocol.Setup setup = DistributedProtocol.Setup.read(in);
+			InstanceReader ir = new InstanceReader();
+			ir.configure(setup.settings);
+			ir.buildInstance(setup.coordinates);
+			countCities = setup.coordinates.length;
+			algorithm.setInstance(ir.getInstance());
+
+			final Properties config = new Properties();
+			config.putAll(setup.settings);
+			config.setProperty("maxcpu", String.valueOf(setup.maxcpu));
+			config.setProperty("verbose", "false");
+			config.setProperty("jmx", "false");
+			config.setProperty("name", "worker-" + setup.workerId);
+			if(threads != null)
+				config.setProperty("maxthreads", threads);
+			else if(config.getProperty("maxthreads") == null)
+				config.setProperty("maxthreads", "0");
+			final ElitePool elitePool = new ElitePool(
+					Math.max(1, Integer.valueOf(config.getProperty("elitesize", "8"))));
+			algorithm.setElitePool(elitePool);
+
+			Thread search = startSearch(config);
+			receive(elitePool);
+			algorithm.stop();
+			join(search);
+		} finally {
+			socket.close();
+		}
+	}
+
+	//Run Algorithm42 on a thread of its own, and send its tours
+	private Thread startSearch(final Properties config) {
+		final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor();
+		sender.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				Solution solution = improved.getAndSet(null);
+				if(solution != null)
+					send(solution, false);
+			}
+		}, SEND_PERIOD, SEND_PERIOD, TimeUnit.MILLISECONDS);
+
+		Thread search = new Thread(new Runnable() {
+			public void run() {
+				Solution best = null;
+				try {
+					best = algorithm.run(config, new ProgressListener() {
+						public void improved(Solution solution, double elapsedSeconds) {
+							improved.set(solution);
+						}
+					});
+				} finally {
+					sender.shutdown();
+					send(best, true);
+				}
+			}
+		}, "search");
+		search.start();
+		return search;
+	}
+
+	/* Send a tour if the coordinator knows no better one
+	 * @param isLast If true, the tour is the last one (possibly null)
+	 */
+	private synchronized void send(Solution solution, boolean isLast) {
+		if(isDone)
+			return;
+		try {
+			if(solution != null && solution.getOF() < knownOF) {
+				DistributedProtocol.writeTour(out, sent, DistributedProtocol.toArray(solution), solution.getOF());
+				knownOF = solution.getOF();
+			}
+			if(isLast) {
+				DistributedProtocol.writeSignal(out, DistributedProtocol.DONE);
+				isDone = true;
+			}
+		} catch (IOException e) {
+			//The connection is lost, the main thread stops the search
+			isDone = true;
+		}
+	}
+
+	/* Add the incumbents of the run to the elite tours until the
+	 * coordinator closes the connection, stopping the search on STOP
+	 */
+	private void receive(ElitePool elitePool) throws IOException {
+		try {
+			while(true) {
+				byte type = in.readByte();
+				if(type == DistributedProtocol.STOP) {
+					algorithm.stop();
+					continue;
+				}
+				if(type != DistributedProtocol.TOUR)
+					throw new IOException("Unknown message " + type);
+				double of = in.readDouble();
+				int[] cities = received.read(in);
+				if(cities.length != countCities)
+					throw new IOException("Tour of " + cities.length + " cities instead of " + countCities);
+				Tour tour = new Tour(cities);
+				tour.setOF(of);
+				synchronized(this) {
+					knownOF = Math.min(knownOF, of);
+				}
+				elitePool.offer(tour);
+			}
+		} catch (EOFException e) {
+			//The run is over
+		} catch (IOException e) {
+			//Closed by the coordinator once it has the last tour
+			if(!isDone)
+				throw e;
+		}
+	}
+
+	private static void join(Thread thread) {
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
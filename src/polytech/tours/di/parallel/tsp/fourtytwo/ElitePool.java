@@ -0,0 +1,100 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* Best tours found by all the workers of a run, shared without locks.
+ * 
+ * The incumbent (best tour so far) is an AtomicReference to an
+ * immutable EliteTour, the elite tours live in a fixed array of
+ * atomic slots. Publishing a tour replaces the worst slot by
+ * compare-and-set and retries if another worker was faster. A tour is
+ * only copied if it gets into the pool, so offering a bad tour is
+ * allocation free
+ */
+public class ElitePool {
+	//Relative difference under which two tours are considered the same
+	private static final double SAME_OF = 1e-9;
+	
+	private final AtomicReference<EliteTour> incumbent = new AtomicReference<EliteTour>();
+	private final AtomicReferenceArray<EliteTour> elites;
+	
+	/* @param capacity The count of elite tours kept, at least 1
+	 */
+	public ElitePool(int capacity) {
+		if(capacity < 1)
+			throw new IllegalArgumentException("The capacity must be positive");
+		elites = new AtomicReferenceArray<EliteTour>(capacity);
+	}
+	
+	//The best tour published so far, null if none
+	public EliteTour getIncumbent() {
+		return incumbent.get();
+	}
+	
+	/* Publish a tour, its objective function must be set
+	 * @return true if the tour entered the pool
+	 */
+	public boolean offer(Tour tour) {
+		double of = tour.getOF();
+		EliteTour snapshot = null;
+		
+		//Incumbent
+		EliteTour best = incumbent.get();
+		while(best == null || of < best.getOF()) {
+			if(snapshot == null)
+				snapshot = new EliteTour(tour);
+			if(incumbent.compareAndSet(best, snapshot))
+				break;
+			best = incumbent.get();
+		}
+		
+		//Elite tours: replace the worst one
+		while(true) {
+			int worst = -1;
+			double worstOF = Double.NEGATIVE_INFINITY;
+			EliteTour worstTour = null;
+			
+			for(int i = 0; i < elites.length(); i++) {
+				EliteTour elite = elites.get(i);
+				if(elite == null) {
+					worst = i;
+					worstTour = null;
+					worstOF = Double.POSITIVE_INFINITY;
+					break;
+				}
+				//Most likely the same tour, keep the pool diverse
+				if(Math.abs(elite.getOF() - of) <= SAME_OF * of)
+					return false;
+				if(elite.getOF() > worstOF) {
+					worst = i;
+					worstTour = elite;
+					worstOF = elite.getOF();
+				}
+			}
+			
+			if(worstOF <= of)
+				return false;
+			if(snapshot == null)
+				snapshot = new EliteTour(tour);
+			if(elites.compareAndSet(worst, worstTour, snapshot))
+				return true;
+		}
+	}
+	
+	/* Pick an elite tour at random
+	 * @return the tour, null if the pool is empty
+	 */
+	public EliteTour pick(Random random) {
+		int start = random.nextInt(elites.length());
+		for(int i = 0; i < elites.length(); i++) {
+			EliteTour elite = elites.get((start + i) % elites.length());
+			if(elite != null)
+				return elite;
+		}
+		return null;
+	}
+}
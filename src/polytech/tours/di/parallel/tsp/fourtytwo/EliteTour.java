@@ -0,0 +1,31 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* Immutable copy of a tour, safe to share between threads once
+ * published (all its fields are final)
+ */
+public final class EliteTour {
+	private final int[] cities;
+	private final double of;
+	
+	public EliteTour(Tour tour) {
+		this.cities = new int[tour.size()];
+		tour.copyTo(cities);
+		this.of = tour.getOF();
+	}
+	
+	public double getOF() {
+		return of;
+	}
+	
+	public int size() {
+		return cities.length;
+	}
+	
+	//Overwrite a tour of the same size with this one
+	public void copyTo(Tour tour) {
+		tour.setCities(cities);
+		tour.setOF(of);
+	}
+}
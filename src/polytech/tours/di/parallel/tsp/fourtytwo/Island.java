@@ -0,0 +1,187 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+import polytech.tours.di.parallel.tsp.construction.TourConstructor;
+
+/* A population evolving on its own thread (steady state): at each
+ * generation two parents chosen by tournament give a child by order
+ * crossover, the child is polished by the local search and replaces
+ * the worst tour if it is better and not already in the population.
+ *
+ * The tours are allocated once: the child is written into a spare
+ * tour, which takes the place of the replaced one, so a generation
+ * allocates nothing. Every migrationPeriod generations the best tour
+ * is sent to the next island of the ring through its lock-free inbox
+ */
+class Island implements Runnable {
+	//Count of tours drawn by a tournament selection
+	private static final int TOURNAMENT = 2;
+	//Relative difference below which two costs are the same tour
+	private static final double SAME_TOUR = 1e-9;
+	
+	private final int id;
+	private final Instance instance;
+	private final LocalSearch localSearch;
+	private final TourConstructor constructor;
+	private final OrderCrossover crossover;
+	private final Deadline deadline;
+	private final SolutionBoard board;
+	private final int migrationPeriod;
+	private final Tour[] population;
+	private Tour spare;
+	//Tours sent by the previous island, read by this one only
+	private final ConcurrentLinkedQueue<EliteTour> inbox = new ConcurrentLinkedQueue<EliteTour>();
+	private Island next;
+	
+	private Random random;
+	private int bestIndex, worstIndex;
+	private volatile long generations;
+	
+	/* @param localSearch The search polishing the tours, owned by
+	 * this island and bound to the deadline
+	 * @param constructor The heuristic building the first population
+	 */
+	Island(int id, Instance instance, LocalSearch localSearch, TourConstructor constructor, int populationSize,
+			int migrationPeriod, Deadline deadline, SolutionBoard board) {
+		this.id = id;
+		this.instance = instance;
+		this.localSearch = localSearch;
+		this.constructor = constructor;
+		this.migrationPeriod = migrationPeriod;
+		this.deadline = deadline;
+		this.board = board;
+		int n = instance.getN();
+		crossover = new OrderCrossover(n);
+		population = new Tour[populationSize];
+		for(int i = 0; i < populationSize; i++) {
+			population[i] = new Tour(n);
+		}
+		spare = new Tour(n);
+	}
+	
+	//The island receiving the migrants of this one
+	void setNext(Island next) {
+		this.next = next;
+	}
+	
+	long getGenerations() {
+		return generations;
+	}
+	
+	double getBestOF() {
+		return population[bestIndex].getOF();
+	}
+	
+	@Override
+	public void run() {
+		random = ThreadLocalRandom.current();
+		initialize();
+		
+		long generation = 0;
+		while(!deadline.isExpired()) {
+			receiveMigrants();
+			
+			int first = select();
+			int second = select();
+			while(second == first) {
+				second = select();
+			}
+			crossover.cross(population[first], population[second], spare, random);
+			spare.setOF(TSPCostCalculator.calcOF(instance, spare));
+			localSearch.optimize(spare);
+			
+			if(insert(spare)) {
+				//The replaced tour becomes the spare one
+				Tour replaced = population[worstIndex];
+				population[worstIndex] = spare;
+				spare = replaced;
+				updateBounds();
+			}
+			
+			generation++;
+			if(generation % migrationPeriod == 0 && next != null && next != this)
+				next.inbox.offer(new EliteTour(population[bestIndex]));
+			generations = generation;
+		}
+		publish(population[bestIndex]);
+	}
+	
+	/* Build and polish the first population. The first tour of the
+	 * first island comes from the deterministic construction
+	 */
+	private void initialize() {
+		for(int i = 0; i < population.length; i++) {
+			Tour tour = population[i];
+			constructor.build(tour, i == 0 && id == 0 ? null : random);
+			tour.setOF(TSPCostCalculator.calcOF(instance, tour));
+			localSearch.optimize(tour);
+		}
+		updateBounds();
+		publish(population[bestIndex]);
+	}
+	
+	//Take the place of the worst tours with the better migrants
+	private void receiveMigrants() {
+		EliteTour migrant;
+		while((migrant = inbox.poll()) != null) {
+			if(migrant.getOF() >= population[worstIndex].getOF() || contains(migrant.getOF()))
+				continue;
+			migrant.copyTo(population[worstIndex]);
+			updateBounds();
+		}
+	}
+	
+	/* Tell if a child enters the population, and publish it if it
+	 * becomes the best tour of the island
+	 */
+	private boolean insert(Tour child) {
+		if(child.getOF() >= population[worstIndex].getOF() || contains(child.getOF()))
+			return false;
+		if(child.getOF() < population[bestIndex].getOF())
+			publish(child);
+		return true;
+	}
+	
+	//Publish a tour if it beats the best one of the run
+	private void publish(Tour tour) {
+		if(board.accepts(id, tour.getOF()))
+			board.offer(id, tour, TSPCostCalculator.calcOF(instance, tour));
+	}
+	
+	//Tournament selection, the best of a few random tours
+	private int select() {
+		int selected = random.nextInt(population.length);
+		for(int t = 1; t < TOURNAMENT; t++) {
+			int other = random.nextInt(population.length);
+			if(population[other].getOF() < population[selected].getOF())
+				selected = other;
+		}
+		return selected;
+	}
+	
+	//Tell if a tour of the population has this cost
+	private boolean contains(double of) {
+		for(Tour tour : population) {
+			if(Math.abs(tour.getOF() - of) <= SAME_TOUR * of)
+				return true;
+		}
+		return false;
+	}
+	
+	private void updateBounds() {
+		bestIndex = 0;
+		worstIndex = 0;
+		for(int i = 1; i < population.length; i++) {
+			if(population[i].getOF() < population[bestIndex].getOF())
+				bestIndex = i;
+			if(population[i].getOF() > population[worstIndex].getOF())
+				worstIndex = i;
+		}
+	}
+}
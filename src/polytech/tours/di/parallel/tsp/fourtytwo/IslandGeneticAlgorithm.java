@@ -0,0 +1,82 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.Solution;
+import polytech.tours.di.parallel.tsp.construction.TourConstructor;
+
+/* Island model genetic algorithm: one population per thread (see
+ * Island), evolving with order crossover and 2-opt/Or-opt polishing,
+ * the islands forming a ring along which the best tours migrate.
+ *
+ * Keys: instance, maxcpu, maxthreads, verbose, candidates (default
+ * 10), construction and targetof as for Algorithm42, plus
+ * populationsize (tours per island, default 32) and migrationperiod
+ * (generations between two migrations, default 50)
+ */
+public class IslandGeneticAlgorithm extends AnytimeSolver {
+	private static final int DEFAULT_CANDIDATES = 10;
+	
+	@Override
+	protected Solution solve(Properties config, ProgressListener listener) {
+		int countIslands = countThreads(config);
+		CandidateLists candidates = instance.getCandidateLists(countCandidates(config, DEFAULT_CANDIDATES));
+		String construction = config.getProperty("construction", "random");
+		int populationSize = Integer.valueOf(config.getProperty("populationsize", "32"));
+		int migrationPeriod = Integer.valueOf(config.getProperty("migrationperiod", "50"));
+		if(populationSize < 2 || migrationPeriod < 1)
+			throw new IllegalArgumentException("The population needs 2 tours and the migration period must be positive");
+		
+		Deadline runDeadline = startDeadline();
+		SolutionBoard board = new SolutionBoard(runDeadline, targetOF, listener);
+		
+		//The islands form a ring
+		List<Island> islands = new ArrayList<Island>(countIslands);
+		for(int i = 0; i < countIslands; i++) {
+			LocalSearch localSearch = new TwoOptSearch(instance, candidates);
+			localSearch.setDeadline(runDeadline);
+			islands.add(new Island(i, instance, localSearch, TourConstructor.create(construction, instance),
+					populationSize, migrationPeriod, runDeadline, board));
+		}
+		for(int i = 0; i < countIslands; i++) {
+			islands.get(i).setNext(islands.get((i + 1) % countIslands));
+		}
+		
+		ExecutorService workers = Executors.newFixedThreadPool(countIslands);
+		List<Future<?>> futures = new ArrayList<Future<?>>(countIslands);
+		try {
+			for(Island island : islands) {
+				futures.add(workers.submit(island));
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			runDeadline.stop();
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			runDeadline.stop();
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			workers.shutdown();
+		}
+		
+		if(isVerbose) {
+			for(int i = 0; i < countIslands; i++) {
+				System.out.println("[Island " + i + "] " + islands.get(i).getGenerations() + " generations, best "
+						+ islands.get(i).getBestOF());
+			}
+		}
+		return board.getBest();
+	}
+}
@@ -0,0 +1,30 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Properties;
+
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.Solution;
+
+/* Iterated Lin-Kernighan, meant for the instances of 10k cities and
+ * more. Each thread runs a Lin-Kernighan descent over the candidate
+ * lists (8 nearest neighbors by default), then kicks its best tour
+ * with a local double bridge and repairs it with the same search
+ * restricted to the cities around the kick, until the time is over.
+ *
+ * The keys of Algorithm42 keep their meaning; only the defaults of
+ * "localsearch", "perturbation" and "candidates" differ
+ */
+public class IteratedLinKernighan extends Algorithm42 {
+	
+	@Override
+	public Solution run(Properties config, ProgressListener listener) {
+		Properties defaults = new Properties();
+		defaults.setProperty("localsearch", "lk");
+		defaults.setProperty("perturbation", "kick");
+		defaults.setProperty("candidates", "8");
+		
+		Properties settings = new Properties(defaults);
+		settings.putAll(config);
+		return super.run(settings, listener);
+	}
+}
@@ -0,0 +1,188 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* Lin-Kernighan style variable-depth search, on top of the Or-opt
+ * moves of TwoOptSearch.
+ *
+ * From a city t1 and its successor t2, a chain of sequential 2-opt
+ * moves is built: each step adds an edge (t2, t3) towards a candidate
+ * t3 of t2 and removes the edge (t4, t3) that keeps a Hamiltonian
+ * cycle, t4 becoming the new successor of t1. The chain goes on while
+ * the cumulated gain stays positive, up to a maximum depth, and stops
+ * as soon as closing the cycle improves the tour. The first levels try
+ * several alternatives (backtracking), the deeper ones only the best.
+ *
+ * Moves are applied to the Tour as they are explored, reversing the
+ * shorter side of the tour, and undone in reverse order when the chain
+ * fails. Reversing the other side mirrors the tour, so the orientation
+ * in which "successor" is read is tracked along the chain
+ */
+public class LinKernighanSearch extends TwoOptSearch {
+	//Count of alternatives tried at each level, 1 beyond the array
+	private static final int[] BREADTH = {5, 3, 1};
+
+	private final int maxDepth;
+
+	//true if successors are read forward in the Tour
+	private boolean forward;
+	//The chain: t2, t3 and t4 of each level, and the reversals done
+	private final int[] t2s, t3s, t4s;
+	private final int[][] reversals;
+	private final boolean[] mirrored;
+	//Alternatives of each level, best first
+	private final int[][] alternatives;
+	private final double[][] scores;
+
+	/* @param maxDepth The maximum count of 2-opt moves in a chain
+	 */
+	public LinKernighanSearch(Instance instance, CandidateLists candidates, int maxDepth) {
+		super(instance, candidates);
+		if(maxDepth < 1)
+			throw new IllegalArgumentException("The depth must be positive");
+		this.maxDepth = maxDepth;
+		t2s = new int[maxDepth + 1];
+		t3s = new int[maxDepth + 1];
+		t4s = new int[maxDepth + 1];
+		reversals = new int[maxDepth + 1][2];
+		mirrored = new boolean[maxDepth + 1];
+		alternatives = new int[maxDepth + 1][BREADTH[0]];
+		scores = new double[maxDepth + 1][BREADTH[0]];
+	}
+
+	@Override
+	protected boolean improve(Tour tour, int city) {
+		return improveChain(tour, city, true)
+				|| improveChain(tour, city, false)
+				|| improveOrOpt(tour, city);
+	}
+
+	/* Start a chain by removing the edge between t1 and its successor
+	 * (or predecessor)
+	 * @return true if the tour was improved
+	 */
+	private boolean improveChain(Tour tour, int t1, boolean direction) {
+		forward = direction;
+		int t2 = succ(tour, t1);
+		return step(tour, t1, t2, instance.getDistance(t1, t2), 1);
+	}
+
+	/* One level of the chain: t2 is the successor of t1 and gain the sum
+	 * of the removed edges minus the added ones, closing edge excluded
+	 * @return true if the tour was improved
+	 */
+	private boolean step(Tour tour, int t1, int t2, double gain, int level) {
+		int count = selectAlternatives(tour, t1, t2, gain, level);
+
+		for(int a = 0; a < count; a++) {
+			int t3 = alternatives[level][a];
+			int t4 = pred(tour, t3);
+			double newGain = gain - instance.getDistance(t2, t3) + instance.getDistance(t3, t4);
+
+			//t1 t2 ... t4 t3 becomes t1 t4 ... t2 t3
+			applyStep(tour, t2, t4, level);
+			t2s[level] = t2;
+			t3s[level] = t3;
+			t4s[level] = t4;
+
+			double closedGain = newGain - instance.getDistance(t4, t1);
+			evaluatedMoves++;
+			if(closedGain > EPSILON) {
+				tour.setOF(tour.getOF() - closedGain);
+				improvingMoves++;
+				push(t1);
+				for(int l = 1; l <= level; l++) {
+					push(t2s[l]);
+					push(t3s[l]);
+					push(t4s[l]);
+				}
+				return true;
+			}
+
+			if(level < maxDepth && step(tour, t1, t4, newGain, level + 1))
+				return true;
+
+			undoStep(tour, level);
+		}
+		return false;
+	}
+
+	/* Fill the alternatives of the level with the candidates t3 of t2
+	 * having a positive partial gain, sorted by decreasing gain once the
+	 * edge (t4, t3) is removed
+	 * @return the count of alternatives
+	 */
+	private int selectAlternatives(Tour tour, int t1, int t2, double gain, int level) {
+		int breadth = BREADTH[Math.min(level, BREADTH.length) - 1];
+		int[] selected = alternatives[level];
+		double[] selectedScores = scores[level];
+		int count = 0;
+		int succT2 = succ(tour, t2);
+
+		for(int r = 0; r < candidates.getK(); r++) {
+			int t3 = candidates.get(t2, r);
+			double partialGain = gain - instance.getDistance(t2, t3);
+
+			//Candidates are sorted: no positive gain past this one
+			if(partialGain <= EPSILON)
+				break;
+			if(t3 == t1 || t3 == succT2)
+				continue;
+
+			int t4 = pred(tour, t3);
+			if(isAdded(t3, t4, level))
+				continue;
+
+			//Insertion sort among the best alternatives
+			double score = partialGain + instance.getDistance(t3, t4);
+			if(count == breadth && score <= selectedScores[count - 1])
+				continue;
+			int i = count < breadth ? count++ : count - 1;
+			while(i > 0 && selectedScores[i - 1] < score) {
+				selected[i] = selected[i - 1];
+				selectedScores[i] = selectedScores[i - 1];
+				i--;
+			}
+			selected[i] = t3;
+			selectedScores[i] = score;
+		}
+		return count;
+	}
+
+	//Tell if the edge was added by one of the previous levels of the chain
+	private boolean isAdded(int a, int b, int level) {
+		for(int l = 1; l < level; l++) {
+			if((t2s[l] == a && t3s[l] == b) || (t2s[l] == b && t3s[l] == a))
+				return true;
+		}
+		return false;
+	}
+
+	//Reverse the path t2 ... t4, read in the current orientation
+	private void applyStep(Tour tour, int t2, int t4, int level) {
+		int i = tour.getPosition(t2);
+		int j = tour.getPosition(t4);
+		boolean complement = forward
+				? reverseShorter(tour, i, j, reversals[level])
+				: reverseShorter(tour, j, i, reversals[level]);
+		mirrored[level] = complement;
+		if(complement)
+			forward = !forward;
+	}
+
+	private void undoStep(Tour tour, int level) {
+		tour.reverse(reversals[level][0], reversals[level][1]);
+		if(mirrored[level])
+			forward = !forward;
+	}
+
+	private int succ(Tour tour, int city) {
+		return forward ? tour.next(city) : tour.previous(city);
+	}
+
+	private int pred(Tour tour, int city) {
+		return forward ? tour.previous(city) : tour.next(city);
+	}
+}
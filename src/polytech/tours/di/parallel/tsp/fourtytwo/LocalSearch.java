@@ -0,0 +1,51 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* A descent improving a tour in place. An instance belongs to a
+ * single worker, so it can keep its buffers between two calls
+ */
+public interface LocalSearch {
+	
+	/* Improve the tour until a local optimum is reached or the
+	 * deadline expires
+	 * @param tour The tour to improve, its objective function must
+	 * be set and is kept up to date
+	 */
+	public void optimize(Tour tour);
+	
+	/* Improve a tour that is already a local optimum except around a
+	 * few cities (e.g. after a perturbation). By default the whole
+	 * tour is optimized again
+	 * @param tour The tour to improve, its objective function must
+	 * be set and is kept up to date
+	 * @param cities The cities whose neighborhood changed
+	 * @param count The count of cities to read in the array
+	 */
+	public default void optimize(Tour tour, int[] cities, int count) {
+		optimize(tour);
+	}
+	
+	/* Set the end of the run. The search polls it between batches of
+	 * moves, never after each move, and returns as soon as it expires.
+	 * By default, or without deadline, the search runs to the local
+	 * optimum
+	 */
+	public default void setDeadline(Deadline deadline) {
+	}
+	
+	/* Counters for the telemetry, cumulated since the creation of the
+	 * search. Plain fields incremented by the owner thread: only this
+	 * thread may read them
+	 * @return the count of moves whose gain was evaluated
+	 */
+	public default long getEvaluatedMoves() {
+		return 0;
+	}
+	
+	/* @return the count of improving moves applied
+	 */
+	public default long getImprovingMoves() {
+		return 0;
+	}
+}
@@ -0,0 +1,384 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Arrays;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.Solution;
+
+/* Held-Karp lower bound, computed on its own thread while the workers
+ * search.
+ *
+ * A 1-tree is a spanning tree of the cities but city 0, plus the two
+ * cheapest edges of city 0; every tour is a 1-tree, so the cheapest
+ * 1-tree for the weights d(i, j) + pi(i) + pi(j), minus twice the sum
+ * of the pi, is a lower bound. The subgradient ascent raises the pi of
+ * the cities of degree more than 2 and lowers the others, with the
+ * step lambda (UB - L) / |g|^2, UB being the best tour of the run and
+ * lambda halved when the bound stalls.
+ *
+ * The ascent works on the candidate edges only (Prim's algorithm with
+ * a heap, O(n k log n)), which is fast but may miss cheaper edges. The
+ * best pi are therefore certified every ROUND iterations by an exact
+ * 1-tree over all the edges (dense Prim, O(n^2), no matrix): only the
+ * certified values are reported
+ */
+public class OneTreeBound implements Runnable {
+	//Count of ascent iterations between two certifications
+	private static final int ROUND = 50;
+	//Count of iterations without improvement before halving lambda
+	private static final int PATIENCE = 10;
+	private static final double MIN_LAMBDA = 1e-4;
+	//Count of cities of the dense Prim between two polls of the deadline
+	private static final int POLL_CITIES = 256;
+	
+	private final Instance instance;
+	private final Deadline deadline;
+	private final SolutionBoard board;
+	//Gap at which the run stops, 0 for none
+	private final double targetGap;
+	private final int n;
+	//The candidate edges in both directions, those of city i from offsets[i]
+	private final int[] offsets, targets;
+	
+	private final double[] pi, bestPi;
+	private final int[] degrees;
+	//Buffers of Prim's algorithm
+	private final double[] keys;
+	private final int[] parents;
+	private final boolean[] inTree;
+	private final Heap heap;
+	
+	//The best certified bound, NaN until the first certification
+	private volatile double bound = Double.NaN;
+	private volatile long iterations;
+	
+	/* @param candidates The edges of the ascent
+	 * @param board The tours of the run, giving the upper bound
+	 * @param targetGap The run stops when the best tour is within this
+	 * relative gap of the bound (e.g. 0.01), 0 to never stop it
+	 */
+	public OneTreeBound(Instance instance, CandidateLists candidates, Deadline deadline, SolutionBoard board,
+			double targetGap) {
+		this.instance = instance;
+		this.deadline = deadline;
+		this.board = board;
+		this.targetGap = targetGap;
+		n = instance.getN();
+		
+		int k = candidates.getK();
+		offsets = new int[n + 1];
+		for(int i = 0; i < n; i++) {
+			for(int r = 0; r < k; r++) {
+				offsets[i + 1]++;
+				offsets[candidates.get(i, r) + 1]++;
+			}
+		}
+		for(int i = 0; i < n; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		targets = new int[offsets[n]];
+		int[] fill = Arrays.copyOf(offsets, n);
+		for(int i = 0; i < n; i++) {
+			for(int r = 0; r < k; r++) {
+				int j = candidates.get(i, r);
+				targets[fill[i]++] = j;
+				targets[fill[j]++] = i;
+			}
+		}
+		
+		pi = new double[n];
+		bestPi = new double[n];
+		degrees = new int[n];
+		keys = new double[n];
+		parents = new int[n];
+		inTree = new boolean[n];
+		heap = new Heap(n, keys);
+	}
+	
+	/* @return the best lower bound proved so far, NaN if none
+	 */
+	public double getBound() {
+		return bound;
+	}
+	
+	public long getIterations() {
+		return iterations;
+	}
+	
+	@Override
+	public void run() {
+		if(n < 5)
+			return;
+		double lambda = 2;
+		double bestSparse = Double.NEGATIVE_INFINITY;
+		boolean isCertified = true;
+		int stalled = 0;
+		long iteration = 0;
+		
+		while(!deadline.isExpired() && lambda > MIN_LAMBDA) {
+			double value = sparseOneTree();
+			//The candidate edges do not connect the cities
+			if(Double.isNaN(value))
+				value = denseOneTree(pi);
+			if(Double.isNaN(value))
+				break;
+			
+			if(value > bestSparse) {
+				bestSparse = value;
+				System.arraycopy(pi, 0, bestPi, 0, n);
+				isCertified = false;
+				stalled = 0;
+			} else if(++stalled >= PATIENCE) {
+				lambda /= 2;
+				stalled = 0;
+			}
+			
+			int norm = 0;
+			for(int i = 0; i < n; i++) {
+				norm += (degrees[i] - 2) * (degrees[i] - 2);
+			}
+			//The 1-tree is a tour: the bound is optimal
+			if(norm == 0)
+				break;
+			
+			Solution best = board.getBest();
+			double upper = best != null ? best.getOF() : 1.05 * value;
+			double step = lambda * Math.max(upper - value, 1e-3 * Math.abs(value)) / norm;
+			for(int i = 0; i < n; i++) {
+				pi[i] += step * (degrees[i] - 2);
+			}
+			
+			iterations = ++iteration;
+			if(iteration % ROUND == 0 && !isCertified) {
+				certify();
+				isCertified = true;
+			}
+		}
+		if(!isCertified)
+			certify();
+	}
+	
+	//Compute the exact bound of the best pi, and raise the target of the run
+	private void certify() {
+		double value = denseOneTree(bestPi);
+		if(Double.isNaN(value) || (!Double.isNaN(bound) && value <= bound))
+			return;
+		bound = value;
+		if(targetGap > 0)
+			board.raiseTarget(value * (1 + targetGap));
+	}
+	
+	private double weight(int i, int j, double[] pi) {
+		return instance.getDistance(i, j) + pi[i] + pi[j];
+	}
+	
+	/* The 1-tree over the candidate edges, with the current pi. Fills
+	 * degrees
+	 * @return the bound of the 1-tree, NaN if the edges do not span
+	 * the cities
+	 */
+	private double sparseOneTree() {
+		Arrays.fill(keys, Double.POSITIVE_INFINITY);
+		Arrays.fill(parents, -1);
+		Arrays.fill(inTree, false);
+		Arrays.fill(degrees, 0);
+		inTree[0] = true;
+		
+		keys[1] = 0;
+		heap.push(1);
+		int reached = 0;
+		double cost = 0;
+		while(!heap.isEmpty()) {
+			int u = heap.pop();
+			inTree[u] = true;
+			reached++;
+			cost += keys[u];
+			if(parents[u] >= 0) {
+				degrees[u]++;
+				degrees[parents[u]]++;
+			}
+			for(int e = offsets[u]; e < offsets[u + 1]; e++) {
+				int v = targets[e];
+				if(inTree[v])
+					continue;
+				double w = weight(u, v, pi);
+				if(w < keys[v]) {
+					keys[v] = w;
+					parents[v] = u;
+					heap.pushOrDecrease(v);
+				}
+			}
+		}
+		if(reached < n - 1)
+			return Double.NaN;
+		
+		//The two cheapest candidate edges of city 0
+		int first = -1, second = -1;
+		double firstWeight = Double.POSITIVE_INFINITY, secondWeight = Double.POSITIVE_INFINITY;
+		for(int e = offsets[0]; e < offsets[1]; e++) {
+			int v = targets[e];
+			double w = weight(0, v, pi);
+			if(v == first || v == second)
+				continue;
+			if(w < firstWeight) {
+				second = first;
+				secondWeight = firstWeight;
+				first = v;
+				firstWeight = w;
+			} else if(w < secondWeight) {
+				second = v;
+				secondWeight = w;
+			}
+		}
+		if(second < 0)
+			return Double.NaN;
+		degrees[0] = 2;
+		degrees[first]++;
+		degrees[second]++;
+		return cost + firstWeight + secondWeight - 2 * sum(pi);
+	}
+	
+	/* The exact 1-tree over all the edges. Fills degrees
+	 * @return the bound, NaN if the deadline expired meanwhile
+	 */
+	private double denseOneTree(double[] pi) {
+		Arrays.fill(keys, Double.POSITIVE_INFINITY);
+		Arrays.fill(parents, -1);
+		Arrays.fill(inTree, false);
+		Arrays.fill(degrees, 0);
+		inTree[0] = true;
+		
+		double cost = 0;
+		int u = 1;
+		keys[1] = 0;
+		for(int added = 1; added < n; added++) {
+			if(added % POLL_CITIES == 0 && deadline.isExpired())
+				return Double.NaN;
+			inTree[u] = true;
+			cost += keys[u];
+			if(parents[u] >= 0) {
+				degrees[u]++;
+				degrees[parents[u]]++;
+			}
+			int next = -1;
+			for(int v = 1; v < n; v++) {
+				if(inTree[v])
+					continue;
+				double w = weight(u, v, pi);
+				if(w < keys[v]) {
+					keys[v] = w;
+					parents[v] = u;
+				}
+				if(next < 0 || keys[v] < keys[next])
+					next = v;
+			}
+			u = next;
+		}
+		
+		int first = -1, second = -1;
+		double firstWeight = Double.POSITIVE_INFINITY, secondWeight = Double.POSITIVE_INFINITY;
+		for(int v = 1; v < n; v++) {
+			double w = weight(0, v, pi);
+			if(w < firstWeight) {
+				second = first;
+				secondWeight = firstWeight;
+				first = v;
+				firstWeight = w;
+			} else if(w < secondWeight) {
+				second = v;
+				secondWeight = w;
+			}
+		}
+		degrees[0] = 2;
+		degrees[first]++;
+		degrees[second]++;
+		return cost + firstWeight + secondWeight - 2 * sum(pi);
+	}
+	
+	private static double sum(double[] values) {
+		double sum = 0;
+		for(double value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+	
+	/* Binary min-heap of cities ordered by their key, with decrease-key:
+	 * positions holds the index of each city in the heap, -1 if absent
+	 */
+	private static class Heap {
+		private final int[] cities;
+		private final int[] positions;
+		private final double[] keys;
+		private int size;
+		
+		Heap(int n, double[] keys) {
+			cities = new int[n];
+			positions = new int[n];
+			Arrays.fill(positions, -1);
+			this.keys = keys;
+		}
+		
+		boolean isEmpty() {
+			return size == 0;
+		}
+		
+		void push(int city) {
+			cities[size] = city;
+			positions[city] = size;
+			up(size++);
+		}
+		
+		//Insert the city, or move it up after its key decreased
+		void pushOrDecrease(int city) {
+			if(positions[city] < 0)
+				push(city);
+			else
+				up(positions[city]);
+		}
+		
+		int pop() {
+			int top = cities[0];
+			positions[top] = -1;
+			if(--size > 0) {
+				cities[0] = cities[size];
+				positions[cities[0]] = 0;
+				down(0);
+			}
+			return top;
+		}
+		
+		private void up(int i) {
+			int city = cities[i];
+			while(i > 0) {
+				int parent = (i - 1) / 2;
+				if(keys[cities[parent]] <= keys[city])
+					break;
+				cities[i] = cities[parent];
+				positions[cities[i]] = i;
+				i = parent;
+			}
+			cities[i] = city;
+			positions[city] = i;
+		}
+		
+		private void down(int i) {
+			int city = cities[i];
+			while(true) {
+				int child = 2 * i + 1;
+				if(child >= size)
+					break;
+				if(child + 1 < size && keys[cities[child + 1]] < keys[cities[child]])
+					child++;
+				if(keys[cities[child]] >= keys[city])
+					break;
+				cities[i] = cities[child];
+				positions[cities[i]] = i;
+				i = child;
+			}
+			cities[i] = city;
+			positions[city] = i;
+		}
+	}
+}
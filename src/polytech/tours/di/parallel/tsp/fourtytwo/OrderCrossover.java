@@ -0,0 +1,63 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* Order crossover (OX) of two tours: the child inherits a random
+ * segment of the first parent at the same positions, then the other
+ * cities in the order they are visited by the second parent, starting
+ * after the segment.
+ *
+ * The buffers are allocated once: the cities of the segment are marked
+ * with a stamp that changes at each crossover, so the marks never need
+ * to be cleared
+ */
+class OrderCrossover {
+	private final int[] cities;
+	private final int[] marks;
+	private int stamp;
+	
+	OrderCrossover(int n) {
+		cities = new int[n];
+		marks = new int[n];
+	}
+	
+	/* Overwrite the child with a crossover of the parents. The
+	 * objective function of the child is not computed
+	 */
+	void cross(Tour first, Tour second, Tour child, Random random) {
+		int n = cities.length;
+		if(++stamp == 0) {
+			Arrays.fill(marks, 0);
+			stamp = 1;
+		}
+		
+		//The segment a..b of the first parent, wrapping around the end
+		int a = random.nextInt(n);
+		int length = 1 + random.nextInt(n - 1);
+		for(int l = 0, i = a; l < length; l++) {
+			int city = first.getCity(i);
+			cities[i] = city;
+			marks[city] = stamp;
+			if(++i == n)
+				i = 0;
+		}
+		
+		//The other positions, in the order of the second parent
+		int position = (a + length) % n;
+		int from = position;
+		for(int l = 0; l < n; l++) {
+			int city = second.getCity(from);
+			if(++from == n)
+				from = 0;
+			if(marks[city] == stamp)
+				continue;
+			cities[position] = city;
+			if(++position == n)
+				position = 0;
+		}
+		child.setCities(cities);
+	}
+}
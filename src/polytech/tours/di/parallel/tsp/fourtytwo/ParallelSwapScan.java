@@ -0,0 +1,147 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* One pass over the O(n^2) swaps of a tour, split into fork/join
+ * tasks. The tasks only read the tour: each evaluates the swaps
+ * (i, j) of a range of positions i from the 4 to 6 edges they touch,
+ * and the results are reduced to the best swap, the smallest (i, j)
+ * winning the ties so that the result does not depend on the split.
+ * The caller applies the move, so the tour is never written while
+ * the tasks run
+ */
+class ParallelSwapScan {
+	//Count of swaps below which a range of positions is not split
+	private static final int LEAF_MOVES = 1 << 15;
+	
+	private final ForkJoinPool pool;
+	private final Instance instance;
+	
+	//The best swap found by the last scan
+	private int bestI, bestJ;
+	private double bestDelta;
+	
+	ParallelSwapScan(ForkJoinPool pool, Instance instance) {
+		this.pool = pool;
+		this.instance = instance;
+	}
+	
+	/* Find the best swap of the tour
+	 * @param deadline The end of the run: the scan stops early when it
+	 * expires, polled once per row of swaps
+	 * @return true if an improving swap was found, see getI, getJ and
+	 * getDelta
+	 */
+	boolean scan(Tour tour, Deadline deadline, double epsilon) {
+		int n = tour.size();
+		if(n < 4)
+			return false;
+		Best best = pool.invoke(new Task(tour, deadline, 0, n - 1));
+		bestI = best.i;
+		bestJ = best.j;
+		bestDelta = best.delta;
+		return best.i >= 0 && best.delta < -epsilon;
+	}
+	
+	int getI() {
+		return bestI;
+	}
+	
+	int getJ() {
+		return bestJ;
+	}
+	
+	double getDelta() {
+		return bestDelta;
+	}
+	
+	/* Cost change of the swap of the cities at positions i < j,
+	 * computed without changing the tour
+	 */
+	static double swapDelta(Instance instance, Tour tour, int i, int j) {
+		int n = tour.size();
+		int a = tour.getCity(i);
+		int b = tour.getCity(j);
+		int prevA = tour.getCity(i == 0 ? n - 1 : i - 1);
+		int nextB = tour.getCity(j == n - 1 ? 0 : j + 1);
+		
+		//... prevA a b nextB ... becomes ... prevA b a nextB ...
+		if(j == i + 1)
+			return instance.getDistance(prevA, b) + instance.getDistance(a, nextB)
+					- instance.getDistance(prevA, a) - instance.getDistance(b, nextB);
+		//The first and last cities are neighbors too: b a ... becomes a b ...
+		if(i == 0 && j == n - 1) {
+			int prevB = tour.getCity(j - 1);
+			int nextA = tour.getCity(i + 1);
+			return instance.getDistance(prevB, a) + instance.getDistance(b, nextA)
+					- instance.getDistance(prevB, b) - instance.getDistance(a, nextA);
+		}
+		int nextA = tour.getCity(i + 1);
+		int prevB = tour.getCity(j - 1);
+		return instance.getDistance(prevA, b) + instance.getDistance(b, nextA)
+				+ instance.getDistance(prevB, a) + instance.getDistance(a, nextB)
+				- instance.getDistance(prevA, a) - instance.getDistance(a, nextA)
+				- instance.getDistance(prevB, b) - instance.getDistance(b, nextB);
+	}
+	
+	//The best swap of a range, i = -1 if none was evaluated
+	private static class Best {
+		int i = -1, j = -1;
+		double delta = Double.POSITIVE_INFINITY;
+		
+		//Keep the better of two results, the smallest (i, j) on ties
+		Best merge(Best other) {
+			if(other.delta < delta || (other.delta == delta && other.i >= 0
+					&& (i < 0 || other.i < i || (other.i == i && other.j < j))))
+				return other;
+			return this;
+		}
+	}
+	
+	//The swaps (i, j) for i in [from, to) and j > i
+	private class Task extends RecursiveTask<Best> {
+		private static final long serialVersionUID = 1L;
+		
+		private final Tour tour;
+		private final Deadline deadline;
+		private final int from, to;
+		
+		Task(Tour tour, Deadline deadline, int from, int to) {
+			this.tour = tour;
+			this.deadline = deadline;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected Best compute() {
+			int n = tour.size();
+			//Row i holds n - 1 - i swaps
+			long moves = (long)(to - from) * (2L * n - from - to - 1) / 2;
+			if(moves > LEAF_MOVES && to - from > 1) {
+				int middle = (from + to) >>> 1;
+				Task left = new Task(tour, deadline, from, middle);
+				left.fork();
+				Best right = new Task(tour, deadline, middle, to).compute();
+				return left.join().merge(right);
+			}
+			
+			Best best = new Best();
+			for(int i = from; i < to && !deadline.isExpired(); i++) {
+				for(int j = i + 1; j < n; j++) {
+					double delta = swapDelta(instance, tour, i, j);
+					if(delta < best.delta) {
+						best.i = i;
+						best.j = j;
+						best.delta = delta;
+					}
+				}
+			}
+			return best;
+		}
+	}
+}
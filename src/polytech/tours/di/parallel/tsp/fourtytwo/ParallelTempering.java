@@ -0,0 +1,177 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.Solution;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+import polytech.tours.di.parallel.tsp.construction.TourConstructor;
+
+/* Simulated annealing with parallel tempering: one replica per thread
+ * (see Replica), each at a temperature of a geometric ladder, the
+ * whole ladder cooling with the elapsed fraction of maxcpu.
+ *
+ * Every EXCHANGE_PERIOD a scheduled task proposes to swap the
+ * temperatures of the replicas holding adjacent slots, alternately the
+ * even and the odd pairs, with the usual acceptance probability
+ * min(1, exp((1/Ts - 1/Ts+1)(Es - Es+1))). Only the slots move, never
+ * the tours: the task is the only writer of the slots and each
+ * replica the only writer of its energy, both volatile fields.
+ *
+ * The ladder is calibrated on the start tour, built by the construction
+ * heuristic and improved by 2-opt: the coldest slot accepts an average
+ * uphill move with probability COLD_ACCEPTANCE, the hottest with
+ * HOT_ACCEPTANCE.
+ *
+ * Keys: instance, maxcpu, maxthreads, verbose, candidates (default 8),
+ * construction (default greedy, random without coordinates) and
+ * targetof, as for Algorithm42
+ */
+public class ParallelTempering extends AnytimeSolver {
+	private static final int DEFAULT_CANDIDATES = 8;
+	private static final long EXCHANGE_PERIOD = 50;
+	private static final double COLD_ACCEPTANCE = 0.001;
+	private static final double HOT_ACCEPTANCE = 0.1;
+	//Count of moves sampled to calibrate the ladder
+	private static final int SAMPLES = 10_000;
+	
+	@Override
+	protected Solution solve(Properties config, ProgressListener listener) {
+		int countReplicas = countThreads(config);
+		CandidateLists candidates = instance.getCandidateLists(countCandidates(config, DEFAULT_CANDIDATES));
+		String construction = config.getProperty("construction", instance.hasCoordinates() ? "greedy" : "random");
+		
+		Deadline runDeadline = startDeadline();
+		SolutionBoard board = new SolutionBoard(runDeadline, targetOF, listener);
+		
+		//The start tour of all the replicas, a 2-opt local optimum
+		Tour start = new Tour(instance.getN());
+		TourConstructor.create(construction, instance).build(start, null);
+		start.setOF(TSPCostCalculator.calcOF(instance, start));
+		LocalSearch descent = new TwoOptSearch(instance, candidates);
+		descent.setDeadline(runDeadline);
+		descent.optimize(start);
+		start.setOF(TSPCostCalculator.calcOF(instance, start));
+		
+		double uphill = averageUphill(instance, candidates, start, new Random(0));
+		TemperatureLadder ladder = new TemperatureLadder(uphill / Math.log(1 / COLD_ACCEPTANCE),
+				uphill / Math.log(1 / HOT_ACCEPTANCE), countReplicas);
+		
+		Replica[] replicas = new Replica[countReplicas];
+		for(int i = 0; i < countReplicas; i++) {
+			replicas[i] = new Replica(i, instance, candidates, ladder, runDeadline, board, start);
+		}
+		
+		ExecutorService workers = Executors.newFixedThreadPool(countReplicas);
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		Exchange exchange = new Exchange(replicas, ladder, runDeadline);
+		scheduler.scheduleAtFixedRate(exchange, EXCHANGE_PERIOD, EXCHANGE_PERIOD, TimeUnit.MILLISECONDS);
+		
+		List<Future<?>> futures = new ArrayList<Future<?>>(countReplicas);
+		try {
+			for(Replica replica : replicas) {
+				futures.add(workers.submit(replica));
+			}
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			runDeadline.stop();
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			runDeadline.stop();
+			if(e.getCause() instanceof RuntimeException)
+				throw (RuntimeException)e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			scheduler.shutdownNow();
+			workers.shutdown();
+		}
+		
+		if(isVerbose) {
+			System.out.println("Exchanges: " + exchange.accepted + "/" + exchange.proposed);
+			for(Replica replica : replicas) {
+				System.out.println("[Replica " + replica.slot + "] " + replica.getMoves() + " moves, "
+						+ replica.getAcceptedMoves() + " accepted, best " + replica.getBestOF());
+			}
+		}
+		//The start tour, if the run was stopped before any replica ran
+		if(board.getBest() == null)
+			board.offer(0, start, start.getOF());
+		return board.getBest();
+	}
+	
+	//Average cost increase of the uphill candidate 2-opt moves of a tour
+	private static double averageUphill(Instance instance, CandidateLists candidates, Tour tour, Random random) {
+		int n = tour.size();
+		double sum = 0;
+		int count = 0;
+		for(int s = 0; s < SAMPLES; s++) {
+			int a = random.nextInt(n);
+			int c = candidates.get(a, random.nextInt(candidates.getK()));
+			int b = tour.next(a);
+			int d = tour.next(c);
+			if(c == b || d == a)
+				continue;
+			double delta = instance.getDistance(a, c) + instance.getDistance(b, d)
+					- instance.getDistance(a, b) - instance.getDistance(c, d);
+			if(delta > 0) {
+				sum += delta;
+				count++;
+			}
+		}
+		//No uphill move: any positive temperature will do
+		return count > 0 ? sum / count : 1;
+	}
+	
+	/* The replica exchange, run by a single thread: it is the only
+	 * writer of the slots
+	 */
+	private static class Exchange implements Runnable {
+		private final Replica[] bySlot;
+		private final TemperatureLadder ladder;
+		private final Deadline deadline;
+		private final SplittableRandom random = new SplittableRandom();
+		private boolean isOdd;
+		private long proposed, accepted;
+		
+		Exchange(Replica[] replicas, TemperatureLadder ladder, Deadline deadline) {
+			this.bySlot = replicas.clone();
+			this.ladder = ladder;
+			this.deadline = deadline;
+		}
+		
+		@Override
+		public void run() {
+			for(int s = isOdd ? 1 : 0; s + 1 < bySlot.length; s += 2) {
+				Replica colder = bySlot[s];
+				Replica hotter = bySlot[s + 1];
+				double betaDifference = 1 / ladder.getTemperature(s, deadline)
+						- 1 / ladder.getTemperature(s + 1, deadline);
+				double exponent = betaDifference * (colder.energy - hotter.energy);
+				proposed++;
+				if(exponent >= 0 || random.nextDouble() < Math.exp(exponent)) {
+					bySlot[s] = hotter;
+					bySlot[s + 1] = colder;
+					hotter.slot = s;
+					colder.slot = s + 1;
+					accepted++;
+				}
+			}
+			isOdd = !isOdd;
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* One replica of the parallel tempering: a simulated annealing walk
+ * over the 2-opt moves creating an edge towards a candidate, at the
+ * temperature of the slot the replica currently holds.
+ *
+ * A move is evaluated in O(1) from the 4 edges it touches and applied
+ * by reversing the shorter side of the tour. The replica works by
+ * batches of moves: between two batches it reads its slot (written by
+ * the exchange task only), recomputes the exact cost to cancel the
+ * rounding errors and publishes its energy (read by the exchange
+ * task only). There is no other synchronization
+ */
+class Replica implements Runnable {
+	//Count of moves between two reads of the slot
+	private static final int BATCH = 1 << 14;
+	//Minimum time between two publications of an improved tour (ns)
+	private static final long PUBLISH_PERIOD = 50_000_000;
+	private static final double EPSILON = 1e-7;
+	
+	private final int id;
+	private final Instance instance;
+	private final CandidateLists candidates;
+	private final TemperatureLadder ladder;
+	private final Deadline deadline;
+	private final SolutionBoard board;
+	private final Tour current, best;
+	
+	//Index of the temperature of this replica, 0 for the coldest
+	volatile int slot;
+	//Cost of the current tour at the end of the last batch
+	volatile double energy;
+	private volatile long moves, acceptedMoves;
+	
+	/* @param start The tour to begin with, its objective function set
+	 */
+	Replica(int id, Instance instance, CandidateLists candidates, TemperatureLadder ladder, Deadline deadline,
+			SolutionBoard board, Tour start) {
+		this.id = id;
+		this.instance = instance;
+		this.candidates = candidates;
+		this.ladder = ladder;
+		this.deadline = deadline;
+		this.board = board;
+		this.slot = id;
+		this.current = start.clone();
+		this.best = start.clone();
+		this.energy = start.getOF();
+	}
+	
+	long getMoves() {
+		return moves;
+	}
+	
+	long getAcceptedMoves() {
+		return acceptedMoves;
+	}
+	
+	double getBestOF() {
+		return best.getOF();
+	}
+	
+	@Override
+	public void run() {
+		Random random = ThreadLocalRandom.current();
+		int n = current.size();
+		int k = candidates.getK();
+		long localMoves = 0, localAccepted = 0;
+		long lastPublish = 0;
+		
+		while(!deadline.isExpired()) {
+			double temperature = ladder.getTemperature(slot, deadline);
+			
+			for(int m = 0; m < BATCH; m++) {
+				int a = random.nextInt(n);
+				int c = candidates.get(a, random.nextInt(k));
+				boolean forward = random.nextBoolean();
+				int b = forward ? current.next(a) : current.previous(a);
+				int d = forward ? current.next(c) : current.previous(c);
+				if(c == b || d == a)
+					continue;
+				
+				double delta = instance.getDistance(a, c) + instance.getDistance(b, d)
+						- instance.getDistance(a, b) - instance.getDistance(c, d);
+				if(delta > 0 && random.nextDouble() >= Math.exp(-delta / temperature))
+					continue;
+				
+				//a b ... c d becomes a c ... b d
+				int i = current.getPosition(forward ? b : c);
+				int j = current.getPosition(forward ? c : b);
+				TwoOptSearch.reverseShorter(current, i, j, null);
+				current.setOF(current.getOF() + delta);
+				localAccepted++;
+				
+				if(current.getOF() < best.getOF() - EPSILON)
+					current.copyTo(best);
+			}
+			localMoves += BATCH;
+			
+			current.setOF(TSPCostCalculator.calcOF(instance, current));
+			best.setOF(TSPCostCalculator.calcOF(instance, best));
+			energy = current.getOF();
+			moves = localMoves;
+			acceptedMoves = localAccepted;
+			
+			long now = System.nanoTime();
+			if(now - lastPublish > PUBLISH_PERIOD || board.isTargetReached(best.getOF())) {
+				board.offer(id, best, best.getOF());
+				lastPublish = now;
+			}
+		}
+		board.offer(id, best, TSPCostCalculator.calcOF(instance, best));
+	}
+}
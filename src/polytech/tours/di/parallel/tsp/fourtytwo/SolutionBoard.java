@@ -0,0 +1,124 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import polytech.tours.di.parallel.tsp.ProgressListener;
+import polytech.tours.di.parallel.tsp.Solution;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* The best tour of a run, published atomically.
+ *
+ * A worker copies its tour into a new Solution, never modified
+ * afterwards, and swaps it in with a CAS: a reader always gets a
+ * complete tour, even while the workers run or when they are
+ * cancelled. On equal costs the lowest worker wins, and a worker
+ * replaces its own tour, so that the result of a deterministic run
+ * does not depend on which intermediate tours were published
+ */
+public class SolutionBoard {
+	private final AtomicReference<Entry> best = new AtomicReference<Entry>();
+	private final Deadline deadline;
+	//The run stops as soon as a tour costs at most this
+	private volatile double targetOF;
+	private final ProgressListener listener;
+	private final Object listenerLock = new Object();
+	//Guarded by listenerLock
+	private double notifiedOF = Double.POSITIVE_INFINITY;
+	
+	/* @param deadline The end of the run, stopped when the target is reached
+	 * @param targetOF The target cost, Double.NEGATIVE_INFINITY for none
+	 * @param listener Receives the improvements, may be null
+	 */
+	public SolutionBoard(Deadline deadline, double targetOF, ProgressListener listener) {
+		this.deadline = deadline;
+		this.targetOF = targetOF;
+		this.listener = listener;
+	}
+	
+	/* Tell if a tour would replace the best one, without copying it
+	 * (one volatile read)
+	 */
+	public boolean accepts(int workerId, double of) {
+		Entry current = best.get();
+		return current == null || current.isBeatenBy(workerId, of);
+	}
+	
+	public boolean isTargetReached(double of) {
+		return of <= targetOF;
+	}
+	
+	/* Accept more expensive tours as the target, e.g. when a lower
+	 * bound proves them close enough to the optimum. Stops the run at
+	 * once if the best tour already reaches the new target. Called by a
+	 * single thread
+	 */
+	public void raiseTarget(double of) {
+		if(of <= targetOF)
+			return;
+		targetOF = of;
+		Entry current = best.get();
+		if(current != null && isTargetReached(current.solution.getOF()))
+			deadline.stop();
+	}
+	
+	/* Publish a copy of a tour if it beats the best one
+	 * @param of The exact cost of the tour, which may differ from the
+	 * one it holds when it is updated incrementally
+	 * @return true if the tour was published
+	 */
+	public boolean offer(int workerId, Tour tour, double of) {
+		if(!accepts(workerId, of))
+			return false;
+		Solution solution = tour.toSolution();
+		solution.setOF(of);
+		Entry entry = new Entry(workerId, solution);
+		Entry current;
+		do {
+			current = best.get();
+			if(current != null && !current.isBeatenBy(workerId, of))
+				return false;
+		} while(!best.compareAndSet(current, entry));
+		
+		if(isTargetReached(of))
+			deadline.stop();
+		notifyListener(entry);
+		return true;
+	}
+	
+	/* @return the best tour published, null if none was. It is shared:
+	 * it must not be modified while the run lasts
+	 */
+	public Solution getBest() {
+		Entry current = best.get();
+		return current != null ? current.solution : null;
+	}
+	
+	/* Notify the listener, one call at a time and in improving order: a
+	 * tour replaced meanwhile is skipped, its successor is notified by
+	 * the worker that published it, and so is a tour that only ties
+	 */
+	private void notifyListener(Entry entry) {
+		if(listener == null)
+			return;
+		synchronized(listenerLock) {
+			if(best.get() != entry || entry.solution.getOF() >= notifiedOF)
+				return;
+			notifiedOF = entry.solution.getOF();
+			listener.improved(entry.solution, deadline.getElapsedNanos() / 1e9);
+		}
+	}
+	
+	private static class Entry {
+		final int workerId;
+		final Solution solution;
+		
+		Entry(int workerId, Solution solution) {
+			this.workerId = workerId;
+			this.solution = solution;
+		}
+		
+		boolean isBeatenBy(int otherWorker, double of) {
+			return of < solution.getOF() || (of == solution.getOF() && otherWorker <= workerId);
+		}
+	}
+}
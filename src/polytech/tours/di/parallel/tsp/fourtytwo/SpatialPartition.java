@@ -0,0 +1,111 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import polytech.tours.di.parallel.tsp.Instance;
+
+/* Karp partitioning: the cities are split at the median of the longer
+ * side of their bounding box, recursively, until each part holds at
+ * most maxSize cities. The median is found by quickselect, so a level
+ * costs O(n) and the whole partition O(n log n).
+ *
+ * The clusters come in the order of the recursion, so consecutive
+ * clusters are neighbors except at the borders of the bisections
+ */
+class SpatialPartition {
+	private final Instance instance;
+	private final int maxSize;
+	private final int[] nodes;
+	private final List<int[]> clusters = new ArrayList<int[]>();
+	
+	private SpatialPartition(Instance instance, int maxSize) {
+		this.instance = instance;
+		this.maxSize = maxSize;
+		int n = instance.getN();
+		nodes = new int[n];
+		for(int i = 0; i < n; i++) {
+			nodes[i] = i;
+		}
+	}
+	
+	/* Split the cities of an instance with coordinates
+	 * @return the clusters, as arrays of cities
+	 */
+	static List<int[]> split(Instance instance, int maxSize) {
+		if(maxSize < 1)
+			throw new IllegalArgumentException("The clusters must hold a city");
+		SpatialPartition partition = new SpatialPartition(instance, maxSize);
+		partition.split(0, instance.getN());
+		return partition.clusters;
+	}
+	
+	//Split the cities nodes[from..to)
+	private void split(int from, int to) {
+		if(to - from <= maxSize) {
+			int[] cluster = new int[to - from];
+			System.arraycopy(nodes, from, cluster, 0, cluster.length);
+			clusters.add(cluster);
+			return;
+		}
+		
+		double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for(int i = from; i < to; i++) {
+			double x = instance.getX(nodes[i]);
+			double y = instance.getY(nodes[i]);
+			minX = Math.min(minX, x);
+			maxX = Math.max(maxX, x);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+		}
+		boolean alongX = maxX - minX >= maxY - minY;
+		int middle = (from + to) >>> 1;
+		select(from, to - 1, middle, alongX);
+		split(from, middle);
+		split(middle, to);
+	}
+	
+	/* Quickselect: move the k-th smallest city of nodes[left..right]
+	 * along the axis to position k, the smaller ones before it
+	 */
+	private void select(int left, int right, int k, boolean alongX) {
+		while(right > left) {
+			//Median of three as pivot
+			int middle = (left + right) >>> 1;
+			if(key(middle, alongX) < key(left, alongX))
+				swap(middle, left);
+			if(key(right, alongX) < key(left, alongX))
+				swap(right, left);
+			if(key(right, alongX) < key(middle, alongX))
+				swap(right, middle);
+			double pivot = key(middle, alongX);
+			
+			int i = left, j = right;
+			while(i <= j) {
+				while(key(i, alongX) < pivot)
+					i++;
+				while(key(j, alongX) > pivot)
+					j--;
+				if(i <= j)
+					swap(i++, j--);
+			}
+			if(k <= j)
+				right = j;
+			else if(k >= i)
+				left = i;
+			else
+				return;
+		}
+	}
+	
+	private double key(int i, boolean alongX) {
+		return alongX ? instance.getX(nodes[i]) : instance.getY(nodes[i]);
+	}
+	
+	private void swap(int i, int j) {
+		int node = nodes[i];
+		nodes[i] = nodes[j];
+		nodes[j] = node;
+	}
+}
@@ -0,0 +1,208 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.concurrent.ForkJoinPool;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* Descent over the swaps of two cities. Without candidate lists
+ * every pass walks through all the O(n^2) swaps and keeps the best
+ * tour met; with candidate lists only the swaps moving a city next
+ * to one of its nearest neighbors are tried, in O(n k).
+ *
+ * With a fork/join pool and no candidate lists, a pass is a best
+ * improvement step instead: the swaps are evaluated in parallel on
+ * the unchanged tour (ParallelSwapScan) and the best one is applied,
+ * which spreads a single descent over all the cores
+ */
+public class SwapSearch implements LocalSearch {
+	private final Instance instance;
+	private final CandidateLists candidates;
+	
+	//Buffer walking through the swaps, allocated once
+	private Tour walk;
+	//Parallel evaluation of the passes, null to walk on one thread
+	private final ParallelSwapScan parallelScan;
+	//Smallest gain accepted by the parallel passes
+	private static final double EPSILON = 1e-7;
+	//Count of rows of candidates between two polls of the deadline
+	private static final int POLL_ROWS = 256;
+	private Deadline deadline = Deadline.none();
+	
+	//Telemetry counters, see LocalSearch
+	private long evaluatedMoves, improvingMoves;
+	
+	/* @param candidates The nearest neighbors of each city, null
+	 * to explore the whole neighborhood
+	 */
+	public SwapSearch(Instance instance, CandidateLists candidates) {
+		this(instance, candidates, null);
+	}
+	
+	/* @param pool The pool evaluating the passes in parallel, null to
+	 * walk through them on the calling thread. Ignored with candidate
+	 * lists, whose passes are too short to split
+	 */
+	public SwapSearch(Instance instance, CandidateLists candidates, ForkJoinPool pool) {
+		this.instance = instance;
+		this.candidates = candidates;
+		this.parallelScan = pool != null && candidates == null ? new ParallelSwapScan(pool, instance) : null;
+	}
+
+	@Override
+	public void optimize(Tour tour) {
+		if(walk == null || walk.size() != tour.size())
+			walk = new Tour(tour.size());
+		
+		boolean continueExploration = true;
+		
+		while(continueExploration && !deadline.isExpired())
+		{
+			float costBefore = (float)tour.getOF();
+			
+			if(parallelScan != null)
+				applyBestSwap(tour);
+			else if(candidates == null)
+				exploreNeighborhood(tour, walk);
+			else
+				exploreCandidates(tour);
+			if((float)tour.getOF() >= costBefore)
+				continueExploration = false;
+		}
+	}
+
+	@Override
+	public void setDeadline(Deadline deadline) {
+		this.deadline = deadline;
+	}
+
+	@Override
+	public long getEvaluatedMoves() {
+		return evaluatedMoves;
+	}
+	
+	@Override
+	public long getImprovingMoves() {
+		return improvingMoves;
+	}
+
+	//Apply the best swap of a parallel pass, if it improves the tour
+	private void applyBestSwap(Tour tour) {
+		int n = tour.size();
+		evaluatedMoves += (long)n * (n - 1) / 2;
+		if(!parallelScan.scan(tour, deadline, EPSILON))
+			return;
+		tour.swap(parallelScan.getI(), parallelScan.getJ());
+		tour.setOF(tour.getOF() + parallelScan.getDelta());
+		improvingMoves++;
+	}
+
+	/* Replace the tour by the best one among many changed tours
+	 * (local search algorithm)
+	 * @param tour The tour to begin with, holds the result
+	 * @param swapTour A buffer of the same size, walks through the swaps
+	 * Package-private for the benchmarks, like computeSwapCost
+	 */
+	void exploreNeighborhood(Tour tour, Tour swapTour) {
+		tour.copyTo(swapTour);
+		int n = tour.size();
+
+		//The deadline is polled once per row of swaps
+		for(int i = 0; i < n && !deadline.isExpired(); i++)
+		{
+			for(int j = i + 1; j < n; j++)
+			{
+				double costBefore = swapTour.getOF();
+				double relativeCostBefore = computeSwapCost(swapTour, i, j);
+				swapTour.swap(i, j);
+				double relativeCostAfter = computeSwapCost(swapTour, i, j);
+				double diffCost = relativeCostBefore - relativeCostAfter;
+				
+				swapTour.setOF(costBefore - diffCost);
+				
+				if(swapTour.getOF() < tour.getOF()) {
+					swapTour.copyTo(tour);
+					improvingMoves++;
+				}
+			}
+			evaluatedMoves += n - i - 1;
+		}
+	}
+
+
+	/* Apply every improving swap that moves a city right before or
+	 * right after one of its candidates (first improvement). A pass
+	 * costs O(n k) instead of O(n^2)
+	 * @param tour The tour to improve in place
+	 */
+	private void exploreCandidates(Tour tour) {
+		int n = tour.size();
+		int k = candidates.getK();
+
+		for(int i = 0; i < n; i++)
+		{
+			if(i % POLL_ROWS == 0 && deadline.isExpired())
+				return;
+			for(int r = 0; r < k; r++)
+			{
+				int neighborPos = tour.getPosition(candidates.get(tour.getCity(i), r));
+				
+				//The city at i goes after, then before, its candidate
+				for(int side = 1; side >= -1; side -= 2)
+				{
+					int j = (neighborPos + side + n) % n;
+					if(j == i)
+						continue;
+					
+					int first = Math.min(i, j);
+					int second = Math.max(i, j);
+					double relativeCostBefore = computeSwapCost(tour, first, second);
+					tour.swap(first, second);
+					double relativeCostAfter = computeSwapCost(tour, first, second);
+					double diffCost = relativeCostBefore - relativeCostAfter;
+					evaluatedMoves++;
+					
+					if(diffCost > 0) {
+						tour.setOF(tour.getOF() - diffCost);
+						improvingMoves++;
+					} else
+						tour.swap(first, second);
+				}
+			}
+		}
+	}
+
+	/* Compute the relative cost of the swap of i and j
+	 * @param tour The tour to compute the cost
+	 * @param i The index to be swapped with j
+	 * @param j The index to be swapped with i
+	 * @return the relative cost
+	 */
+	double computeSwapCost(Tour tour, int i, int j) {
+		//Not accurate, but acceptable for float values
+		double cost;
+		int locFrom, locTo;
+		int n = tour.size();
+		
+		locFrom = tour.getCity((i - 1 + n) % n);
+		locTo = tour.getCity(i);
+		cost = instance.getDistance(locFrom, locTo);
+		
+		locFrom = tour.getCity(i);
+		locTo = tour.getCity(i + 1);
+		cost += instance.getDistance(locFrom, locTo);
+
+		if(j - i != 1) {
+			locFrom = tour.getCity(j - 1);
+			locTo = tour.getCity(j);
+			cost += instance.getDistance(locFrom, locTo);
+		}
+		
+		locFrom = tour.getCity(j);
+		locTo = tour.getCity((j + 1) % n);
+		cost += instance.getDistance(locFrom, locTo);
+		
+		return cost;
+	}
+}
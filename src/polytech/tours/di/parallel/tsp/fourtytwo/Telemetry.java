@@ -0,0 +1,244 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/* The metrics of a run: the counters of every worker, aggregated
+ * only when they are read, and the convergence trace of the best
+ * objective function of all the workers.
+ *
+ * The trace only grows when the best tour of all the workers
+ * improves: a worker first compares its tour with the current best
+ * (one volatile read), so recording costs nothing in the usual case
+ */
+public class Telemetry implements TelemetryMXBean {
+	private static final String MBEAN_NAME = "polytech.tours.di.parallel.tsp:type=Telemetry";
+	//Numbers the MBeans of the runs whose name is taken
+	private static final AtomicInteger countRuns = new AtomicInteger();
+	
+	private final long startTime = System.nanoTime();
+	private final WorkerCounters[] workers;
+	private final ConcurrentLinkedQueue<TracePoint> trace = new ConcurrentLinkedQueue<TracePoint>();
+	//Best objective function of all the workers, as the bits of a double
+	private final AtomicLong best = new AtomicLong(Double.doubleToLongBits(Double.MAX_VALUE));
+	//End of the run, 0 while it lasts
+	private volatile long endTime;
+	//Chooses the count of active workers, null if it is fixed
+	private volatile ThreadTuner tuner;
+	private volatile ObjectName registeredName;
+	
+	public Telemetry(int countWorkers) {
+		workers = new WorkerCounters[countWorkers];
+		for(int i = 0; i < countWorkers; i++) {
+			workers[i] = new WorkerCounters(i);
+		}
+	}
+	
+	public void setTuner(ThreadTuner tuner) {
+		this.tuner = tuner;
+	}
+	
+	//The tuner of the count of active workers, null if the count is fixed
+	public ThreadTuner getTuner() {
+		return tuner;
+	}
+	
+	public WorkerCounters getWorker(int workerId) {
+		return workers[workerId];
+	}
+	
+	/* Record a tour found by a worker if it beats the best one of all
+	 * the workers
+	 */
+	void recordBest(int workerId, double of) {
+		long bits = best.get();
+		while(of < Double.longBitsToDouble(bits)) {
+			if(best.compareAndSet(bits, Double.doubleToLongBits(of))) {
+				trace.add(new TracePoint(System.nanoTime() - startTime, workerId, of));
+				return;
+			}
+			bits = best.get();
+		}
+	}
+	
+	//Freeze the elapsed time, so that the rates stay those of the run
+	void stop() {
+		endTime = System.nanoTime();
+	}
+	
+	/* @return the improvements of the best tour of all the workers, in
+	 * chronological order
+	 */
+	public List<TracePoint> getTrace() {
+		List<TracePoint> points = new ArrayList<TracePoint>(trace);
+		//Two workers may append in the reverse order of their CAS
+		points.sort((a, b) -> Double.compare(b.getOF(), a.getOF()));
+		return points;
+	}
+	
+	public List<WorkerCounters> getWorkers() {
+		return List.of(workers);
+	}
+	
+	/* Register the MBean of the run. If the name is taken, by a run
+	 * still going or by one that did not unregister, the MBean gets a
+	 * number (run=k) instead of replacing the other one, which its run
+	 * would unregister later. A failure only costs the JMX view
+	 * @param runName Added to the name of the MBean so that
+	 * simultaneous runs are told apart, may be null
+	 */
+	public void registerMBean(String runName) {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			String base = runName == null ? MBEAN_NAME : MBEAN_NAME + ",name=" + ObjectName.quote(runName);
+			ObjectName name = new ObjectName(base);
+			while(true) {
+				try {
+					server.registerMBean(this, name);
+					break;
+				} catch (InstanceAlreadyExistsException e) {
+					name = new ObjectName(base + ",run=" + countRuns.incrementAndGet());
+				}
+			}
+			registeredName = name;
+		} catch (JMException e) {
+			System.err.println("Cannot register the telemetry MBean: " + e);
+		}
+	}
+	
+	//The name of the MBean of the run, null if it is not registered
+	public ObjectName getRegisteredName() {
+		return registeredName;
+	}
+	
+	public void unregisterMBean() {
+		if(registeredName == null)
+			return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+		} catch (JMException e) {
+			//Unregistered from outside, through JMX
+		}
+		registeredName = null;
+	}
+	
+	@Override
+	public double getElapsedSeconds() {
+		long end = endTime;
+		return ((end == 0 ? System.nanoTime() : end) - startTime) / 1e9;
+	}
+	
+	@Override
+	public double getBestOF() {
+		return Double.longBitsToDouble(best.get());
+	}
+	
+	@Override
+	public int getWorkerCount() {
+		return workers.length;
+	}
+	
+	@Override
+	public long getEvaluatedMoves() {
+		long sum = 0;
+		for(WorkerCounters worker : workers) {
+			sum += worker.getEvaluatedMoves();
+		}
+		return sum;
+	}
+	
+	@Override
+	public double getMovesPerSecond() {
+		return getEvaluatedMoves() / getElapsedSeconds();
+	}
+	
+	@Override
+	public long getImprovingMoves() {
+		long sum = 0;
+		for(WorkerCounters worker : workers) {
+			sum += worker.getImprovingMoves();
+		}
+		return sum;
+	}
+	
+	@Override
+	public long getRestarts() {
+		long sum = 0;
+		for(WorkerCounters worker : workers) {
+			sum += worker.getRestarts();
+		}
+		return sum;
+	}
+	
+	@Override
+	public long getKicks() {
+		long sum = 0;
+		for(WorkerCounters worker : workers) {
+			sum += worker.getKicks();
+		}
+		return sum;
+	}
+	
+	@Override
+	public double getAverageDepth() {
+		long descents = getRestarts() + getKicks();
+		return descents == 0 ? 0 : (double)getImprovingMoves() / descents;
+	}
+	
+	@Override
+	public long getMaxDepth() {
+		long max = 0;
+		for(WorkerCounters worker : workers) {
+			max = Math.max(max, worker.getMaxDepth());
+		}
+		return max;
+	}
+	
+	@Override
+	public double[] getWorkerMovesPerSecond() {
+		double seconds = getElapsedSeconds();
+		double[] rates = new double[workers.length];
+		for(int i = 0; i < workers.length; i++) {
+			rates[i] = workers[i].getEvaluatedMoves() / seconds;
+		}
+		return rates;
+	}
+	
+	@Override
+	public double[] getWorkerBestOF() {
+		double[] values = new double[workers.length];
+		for(int i = 0; i < workers.length; i++) {
+			values[i] = workers[i].getBestOF();
+		}
+		return values;
+	}
+	
+	@Override
+	public long[] getWorkerDescents() {
+		long[] values = new long[workers.length];
+		for(int i = 0; i < workers.length; i++) {
+			values[i] = workers[i].getDescents();
+		}
+		return values;
+	}
+	
+	//One line summary, for the verbose mode
+	@Override
+	public String toString() {
+		double best = getBestOF();
+		ThreadTuner current = tuner;
+		return String.format("[%.1fs] best %s, %.3g moves/s, %d restarts, %d kicks, depth %.1f%s",
+				getElapsedSeconds(), best == Double.MAX_VALUE ? "-" : String.format("%.2f", best),
+				getMovesPerSecond(), getRestarts(), getKicks(), getAverageDepth(),
+				current != null ? ", " + current.getActive() + " threads" : "");
+	}
+}
@@ -0,0 +1,107 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/* Write the telemetry of a run to files: two CSV files (the counters
+ * of the workers and the convergence trace) or a single JSON
+ * document holding both, and the windows of the thread tuner if any.
+ * Numbers are always written with a dot
+ */
+public class TelemetryExporter {
+	
+	/* @param counters Receives one line per worker
+	 * @param trace Receives one line per improvement of the best tour
+	 */
+	public static void writeCSV(Telemetry telemetry, Path counters, Path trace) throws IOException {
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(counters))) {
+			out.println("worker,evaluated_moves,moves_per_second,improving_moves,restarts,kicks,average_depth,max_depth,best_of");
+			double seconds = telemetry.getElapsedSeconds();
+			for(WorkerCounters worker : telemetry.getWorkers()) {
+				out.println(String.format(Locale.ROOT, "%d,%d,%.1f,%d,%d,%d,%.2f,%d,%.6f",
+						worker.getWorkerId(), worker.getEvaluatedMoves(), worker.getEvaluatedMoves() / seconds,
+						worker.getImprovingMoves(), worker.getRestarts(), worker.getKicks(),
+						worker.getAverageDepth(), worker.getMaxDepth(), worker.getBestOF()));
+			}
+		}
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(trace))) {
+			out.println("seconds,worker,best_of");
+			for(TracePoint point : telemetry.getTrace()) {
+				out.println(String.format(Locale.ROOT, "%.6f,%d,%.6f",
+						point.getSeconds(), point.getWorkerId(), point.getOF()));
+			}
+		}
+	}
+	
+	public static void writeJSON(Telemetry telemetry, Path file) throws IOException {
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+			out.println("{");
+			out.println(String.format(Locale.ROOT, "  \"elapsed_seconds\": %.6f,", telemetry.getElapsedSeconds()));
+			out.println(String.format(Locale.ROOT, "  \"best_of\": %s,", number(telemetry.getBestOF())));
+			out.println(String.format(Locale.ROOT, "  \"evaluated_moves\": %d,", telemetry.getEvaluatedMoves()));
+			out.println(String.format(Locale.ROOT, "  \"moves_per_second\": %.1f,", telemetry.getMovesPerSecond()));
+			out.println(String.format(Locale.ROOT, "  \"improving_moves\": %d,", telemetry.getImprovingMoves()));
+			out.println(String.format(Locale.ROOT, "  \"restarts\": %d,", telemetry.getRestarts()));
+			out.println(String.format(Locale.ROOT, "  \"kicks\": %d,", telemetry.getKicks()));
+			out.println(String.format(Locale.ROOT, "  \"average_depth\": %.2f,", telemetry.getAverageDepth()));
+			out.println(String.format(Locale.ROOT, "  \"max_depth\": %d,", telemetry.getMaxDepth()));
+			
+			out.println("  \"workers\": [");
+			List<WorkerCounters> workers = telemetry.getWorkers();
+			double seconds = telemetry.getElapsedSeconds();
+			for(int i = 0; i < workers.size(); i++) {
+				WorkerCounters worker = workers.get(i);
+				out.println(String.format(Locale.ROOT, "    {\"worker\": %d, \"evaluated_moves\": %d, "
+						+ "\"moves_per_second\": %.1f, \"improving_moves\": %d, \"restarts\": %d, \"kicks\": %d, "
+						+ "\"average_depth\": %.2f, \"max_depth\": %d, \"best_of\": %s}%s",
+						worker.getWorkerId(), worker.getEvaluatedMoves(), worker.getEvaluatedMoves() / seconds,
+						worker.getImprovingMoves(), worker.getRestarts(), worker.getKicks(),
+						worker.getAverageDepth(), worker.getMaxDepth(), number(worker.getBestOF()),
+						i + 1 < workers.size() ? "," : ""));
+			}
+			out.println("  ],");
+			
+			out.println("  \"trace\": [");
+			List<TracePoint> trace = telemetry.getTrace();
+			for(int i = 0; i < trace.size(); i++) {
+				TracePoint point = trace.get(i);
+				out.println(String.format(Locale.ROOT, "    {\"seconds\": %.6f, \"worker\": %d, \"best_of\": %.6f}%s",
+						point.getSeconds(), point.getWorkerId(), point.getOF(), i + 1 < trace.size() ? "," : ""));
+			}
+			
+			ThreadTuner tuner = telemetry.getTuner();
+			if(tuner == null) {
+				out.println("  ]");
+				out.println("}");
+				return;
+			}
+			out.println("  ],");
+			out.println(String.format(Locale.ROOT, "  \"threads\": %d,", tuner.getActive()));
+			out.println("  \"tuning\": [");
+			List<ThreadTuner.Window> windows = tuner.getWindows();
+			for(int i = 0; i < windows.size(); i++) {
+				ThreadTuner.Window window = windows.get(i);
+				StringBuilder rates = new StringBuilder();
+				for(double rate : window.getWorkerMovesPerSecond()) {
+					rates.append(rates.length() == 0 ? "" : ", ").append(String.format(Locale.ROOT, "%.1f", rate));
+				}
+				out.println(String.format(Locale.ROOT, "    {\"seconds\": %.6f, \"threads\": %d, "
+						+ "\"moves_per_second\": %.1f, \"worker_moves_per_second\": [%s], "
+						+ "\"improvement_per_second\": %.9f, \"decision\": \"%s\"}%s",
+						window.getSeconds(), window.getCount(), window.getMovesPerSecond(), rates,
+						window.getImprovementPerSecond(), window.getDecision(), i + 1 < windows.size() ? "," : ""));
+			}
+			out.println("  ]");
+			out.println("}");
+		}
+	}
+	
+	//A worker that found no tour has no objective function: JSON has no infinity
+	private static String number(double value) {
+		return value == Double.MAX_VALUE ? "null" : String.format(Locale.ROOT, "%.6f", value);
+	}
+}
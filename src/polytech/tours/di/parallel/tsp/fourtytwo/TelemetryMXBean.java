@@ -0,0 +1,34 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+/* The view of a run given to JMX clients (jconsole, VisualVM...),
+ * registered as polytech.tours.di.parallel.tsp:type=Telemetry (plus
+ * name=... for a named run) while the run lasts. The per-worker
+ * arrays are indexed by worker id
+ */
+public interface TelemetryMXBean {
+	public double getElapsedSeconds();
+	
+	public double getBestOF();
+	
+	public int getWorkerCount();
+	
+	public long getEvaluatedMoves();
+	
+	public double getMovesPerSecond();
+	
+	public long getImprovingMoves();
+	
+	public long getRestarts();
+	
+	public long getKicks();
+	
+	public double getAverageDepth();
+	
+	public long getMaxDepth();
+	
+	public double[] getWorkerMovesPerSecond();
+	
+	public double[] getWorkerBestOF();
+	
+	public long[] getWorkerDescents();
+}
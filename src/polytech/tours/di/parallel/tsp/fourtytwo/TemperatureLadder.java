@@ -0,0 +1,47 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+/* The temperatures of the parallel tempering: a geometric ladder from
+ * the coldest slot to the hottest, cooled as a whole along the run.
+ *
+ * The ladder is scaled by FINAL_RATIO^p, p being the elapsed fraction
+ * of the time budget, so the replicas always reach the near-greedy
+ * temperatures at the end of the run, whatever maxcpu is. With no
+ * time budget the ladder does not cool
+ */
+class TemperatureLadder {
+	//Temperature at the end of the run relative to the beginning
+	private static final double FINAL_RATIO = 0.01;
+	
+	private final double[] temperatures;
+	
+	/* @param coldest The temperature of slot 0 at the beginning
+	 * @param hottest The temperature of the last slot at the beginning
+	 * @param count The count of slots
+	 */
+	TemperatureLadder(double coldest, double hottest, int count) {
+		temperatures = new double[count];
+		for(int s = 0; s < count; s++) {
+			//A single replica anneals from the hottest temperature
+			double fraction = count == 1 ? 1 : (double)s / (count - 1);
+			temperatures[s] = coldest * Math.pow(hottest / coldest, fraction);
+		}
+	}
+	
+	int size() {
+		return temperatures.length;
+	}
+	
+	//The temperature of a slot at the current time of the run
+	double getTemperature(int slot, Deadline deadline) {
+		return temperatures[slot] * Math.pow(FINAL_RATIO, getProgress(deadline));
+	}
+	
+	//The elapsed fraction of the time budget, 0 without budget
+	private static double getProgress(Deadline deadline) {
+		long remaining = deadline.getRemainingNanos();
+		if(remaining == Long.MAX_VALUE)
+			return 0;
+		long elapsed = deadline.getElapsedNanos();
+		return (double)elapsed / (elapsed + remaining);
+	}
+}
@@ -0,0 +1,280 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import polytech.tours.di.parallel.tsp.Solution;
+
+/* Chooses the count of active workers while the run lasts, in place of
+ * a count found beforehand by trying them all.
+ *
+ * Every worker of the run is started; those beyond the active count
+ * park between two descents. The tuner, run every TICK by the
+ * scheduler, measures windows of at least MIN_WINDOW in which every
+ * active worker ended a descent: the moves evaluated per second by each
+ * worker, and the relative improvement of the best tour per second.
+ * Starting from one worker, one more is activated as long as it adds at
+ * least MIN_EFFICIENCY times the throughput of an average worker. Past
+ * the knee (memory bandwidth, reads of the shared distances, fewer
+ * cores than threads) the last one is parked again. Every PROBE_PERIOD
+ * windows one more, then one less worker is tried, the load of the
+ * host may have changed. The improvement rate decays with the age of
+ * the run whatever the count: it is reported, it does not decide
+ */
+public class ThreadTuner implements Runnable {
+	//Period of the measures (ms)
+	public static final long TICK = 100;
+	//Shortest and longest window (ns)
+	private static final long MIN_WINDOW = 500_000_000L;
+	private static final long MAX_WINDOW = 5_000_000_000L;
+	//Share of the throughput of an average worker an extra worker must add
+	private static final double MIN_EFFICIENCY = 0.6;
+	//Count of windows at the same count between two probes
+	private static final int PROBE_PERIOD = 8;
+	//Longest park between two polls of the deadline (ms)
+	private static final long PARK_POLL = 50;
+
+	private final int maxWorkers;
+	private final Telemetry telemetry;
+	private final SolutionBoard board;
+	private final Deadline deadline;
+	private final Object gate = new Object();
+	private volatile int active = 1;
+	private final List<Window> windows = Collections.synchronizedList(new ArrayList<Window>());
+
+	//Read by the scheduler thread only
+	private long windowStart;
+	private long[] startMoves, startDescents;
+	private double startOF;
+	//The count kept and its last throughput
+	private int baseCount = 1;
+	private double baseRate;
+	private boolean isClimbing = true;
+	private boolean isWarmingUp = true;
+	private boolean isNextProbeUp = true;
+	private int settledWindows;
+
+	/* @param maxWorkers The count of workers of the run, all started
+	 * @param telemetry The counters of the workers
+	 * @param board The best tour, for the improvement rate
+	 */
+	public ThreadTuner(int maxWorkers, Telemetry telemetry, SolutionBoard board, Deadline deadline) {
+		this.maxWorkers = maxWorkers;
+		this.telemetry = telemetry;
+		this.board = board;
+		this.deadline = deadline;
+		startMoves = new long[maxWorkers];
+		startDescents = new long[maxWorkers];
+		startWindow();
+	}
+
+	/* Park the worker while it is not active, called between descents.
+	 * Returns at the end of the run
+	 */
+	public void awaitTurn(int workerId) {
+		if(workerId < active)
+			return;
+		synchronized(gate) {
+			while(workerId >= active && !deadline.isExpired()) {
+				try {
+					gate.wait(PARK_POLL);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	public int getActive() {
+		return active;
+	}
+
+	//The windows measured so far, the current count of each one
+	public List<Window> getWindows() {
+		synchronized(windows) {
+			return new ArrayList<Window>(windows);
+		}
+	}
+
+	//Close the window if it is long enough, and tune the count
+	@Override
+	public void run() {
+		long now = System.nanoTime();
+		long length = now - windowStart;
+		if(length < MIN_WINDOW)
+			return;
+		List<WorkerCounters> workers = telemetry.getWorkers();
+		int count = active;
+		if(length < MAX_WINDOW) {
+			for(int i = 0; i < count; i++) {
+				if(workers.get(i).getDescents() == startDescents[i])
+					return;
+			}
+		}
+
+		double seconds = length / 1e9;
+		double[] workerRates = new double[count];
+		double rate = 0;
+		for(int i = 0; i < maxWorkers; i++) {
+			double workerRate = (workers.get(i).getEvaluatedMoves() - startMoves[i]) / seconds;
+			if(i < count)
+				workerRates[i] = workerRate;
+			rate += workerRate;
+		}
+		double of = bestOF();
+		double improvement = startOF < Double.MAX_VALUE && of < Double.MAX_VALUE ? (startOF - of) / startOF / seconds : 0;
+		String decision = decide(count, rate);
+		windows.add(new Window(telemetry.getElapsedSeconds(), count, rate, workerRates, improvement, decision));
+		startWindow();
+	}
+
+	/* Hill climbing on the throughput
+	 * @return what was decided, for the report
+	 */
+	private String decide(int count, double rate) {
+		//The first window after a change mixes both counts
+		if(isWarmingUp) {
+			isWarmingUp = false;
+			return "warm-up";
+		}
+		double averageRate = baseRate / baseCount;
+		if(count > baseCount) {
+			if(rate - baseRate >= MIN_EFFICIENCY * averageRate) {
+				//Worth it: go on climbing
+				accept(count, rate);
+				isClimbing = count < maxWorkers;
+				if(isClimbing) {
+					setActive(count + 1);
+					return "kept, try " + (count + 1);
+				}
+				return "kept";
+			}
+			isClimbing = false;
+			setActive(baseCount);
+			return "back to " + baseCount;
+		}
+		if(count < baseCount) {
+			if(baseRate - rate < MIN_EFFICIENCY * averageRate) {
+				accept(count, rate);
+				return "kept";
+			}
+			setActive(baseCount);
+			return "back to " + baseCount;
+		}
+
+		//At the count kept: refresh its throughput, probe from time to time
+		baseRate = rate;
+		if(isClimbing && count < maxWorkers) {
+			setActive(count + 1);
+			return "try " + (count + 1);
+		}
+		isClimbing = false;
+		if(++settledWindows < PROBE_PERIOD)
+			return "";
+		settledWindows = 0;
+		boolean isUp = isNextProbeUp ? count < maxWorkers : count == 1;
+		isNextProbeUp = !isNextProbeUp;
+		if(isUp && count < maxWorkers) {
+			setActive(count + 1);
+			return "try " + (count + 1);
+		}
+		if(!isUp && count > 1) {
+			setActive(count - 1);
+			return "try " + (count - 1);
+		}
+		return "";
+	}
+
+	private void accept(int count, double rate) {
+		baseCount = count;
+		baseRate = rate;
+		settledWindows = 0;
+	}
+
+	private void setActive(int count) {
+		isWarmingUp = true;
+		synchronized(gate) {
+			active = count;
+			gate.notifyAll();
+		}
+	}
+
+	private void startWindow() {
+		windowStart = System.nanoTime();
+		List<WorkerCounters> workers = telemetry.getWorkers();
+		for(int i = 0; i < maxWorkers; i++) {
+			startMoves[i] = workers.get(i).getEvaluatedMoves();
+			startDescents[i] = workers.get(i).getDescents();
+		}
+		startOF = bestOF();
+	}
+
+	private double bestOF() {
+		Solution best = board.getBest();
+		return best != null ? best.getOF() : Double.MAX_VALUE;
+	}
+
+	//The measures, one line per window
+	@Override
+	public String toString() {
+		StringBuilder str = new StringBuilder("Threads: " + active + " of " + maxWorkers);
+		for(Window window : getWindows()) {
+			str.append(String.format("%n[%.1fs] %d threads, %.3g moves/s (%.3g per thread), improvement %.3g%%/s %s",
+					window.getSeconds(), window.getCount(), window.getMovesPerSecond(),
+					window.getMovesPerSecond() / window.getCount(), 100 * window.getImprovementPerSecond(),
+					window.getDecision()));
+		}
+		return str.toString();
+	}
+
+	/* One measurement window, immutable
+	 */
+	public static class Window {
+		private final double seconds;
+		private final int count;
+		private final double movesPerSecond;
+		private final double[] workerMovesPerSecond;
+		private final double improvementPerSecond;
+		private final String decision;
+
+		Window(double seconds, int count, double movesPerSecond, double[] workerMovesPerSecond,
+				double improvementPerSecond, String decision) {
+			this.seconds = seconds;
+			this.count = count;
+			this.movesPerSecond = movesPerSecond;
+			this.workerMovesPerSecond = workerMovesPerSecond;
+			this.improvementPerSecond = improvementPerSecond;
+			this.decision = decision;
+		}
+
+		//End of the window, since the beginning of the run
+		public double getSeconds() {
+			return seconds;
+		}
+
+		//Count of active workers during the window
+		public int getCount() {
+			return count;
+		}
+
+		public double getMovesPerSecond() {
+			return movesPerSecond;
+		}
+
+		public double[] getWorkerMovesPerSecond() {
+			return workerMovesPerSecond.clone();
+		}
+
+		//Relative decrease of the best cost per second
+		public double getImprovementPerSecond() {
+			return improvementPerSecond;
+		}
+
+		//Change of count decided at the end of the window, empty if none
+		public String getDecision() {
+			return decision;
+		}
+	}
+}
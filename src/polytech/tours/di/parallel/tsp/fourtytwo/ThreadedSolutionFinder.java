@@ -1,157 +1,326 @@
 package polytech.tours.di.parallel.tsp.fourtytwo;
 
-import java.util.Collections;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 
 import polytech.tours.di.parallel.tsp.Instance;
 import polytech.tours.di.parallel.tsp.Solution;
 import polytech.tours.di.parallel.tsp.TSPCostCalculator;
+import polytech.tours.di.parallel.tsp.Tour;
+import polytech.tours.di.parallel.tsp.construction.RandomConstructor;
+import polytech.tours.di.parallel.tsp.construction.TourConstructor;
 
 public class ThreadedSolutionFinder implements Runnable {
+	//Longest segment moved by a kick
+	private static final int KICK_LENGTH = 50;
+	//Minimum time between two publications of an improved tour (ns)
+	private static final long PUBLISH_PERIOD = 50_000_000;
+	
 	private final int workerId;
 	private final Instance instance;
 	private final boolean isVerbose;
 	private final Solution solution;
+	private final LocalSearch localSearch;
+	private final TourConstructor constructor;
+	private final boolean isIterated;
+	private final ElitePool elitePool;
+	private final double eliteRate;
+	private final Telemetry telemetry;
+	private final WorkerCounters counters;
 	
 	private Thread thread;
 	private Random random;
+	//Stream given to the worker, null to use the generator of the thread
+	private Random seededRandom;
+	//Count of descents before stopping, 0 to run until the deadline
+	private long maxIterations;
+	private Deadline deadline = Deadline.none();
+	//The best tour of the run, null if only solution receives the result
+	private SolutionBoard board;
+	private long lastBoardPublish;
+	//Cities of the first start tour, null to build it
+	private int[] startTour;
+	//Parks the worker while it is not needed, null to always run
+	private ThreadTuner tuner;
 	
 	public ThreadedSolutionFinder(boolean isVerbose, int workerId, Instance instance, Solution solution) {
+		this(isVerbose, workerId, instance, solution, new SwapSearch(instance, null),
+				new RandomConstructor(instance), false, null, 0, null);
+	}
+	
+	/* @param localSearch The descent applied to every start tour,
+	 * owned by this worker
+	 * @param constructor The heuristic building the start tours, owned
+	 * by this worker. Worker 0 begins with its deterministic variant,
+	 * every other start tour comes from the randomized one
+	 * @param isIterated If true, after the first descent the worker
+	 * kicks its best tour and repairs it (iterated local search)
+	 * instead of restarting from a new tour
+	 * @param elitePool The tours shared by all the workers, null if
+	 * the worker runs on its own
+	 * @param eliteRate The probability to restart from a perturbed
+	 * elite tour rather than from a constructed one
+	 * @param telemetry The metrics of the run, receives the counters
+	 * of this worker; null if not collected
+	 */
+	public ThreadedSolutionFinder(boolean isVerbose, int workerId, Instance instance, Solution solution,
+			LocalSearch localSearch, TourConstructor constructor, boolean isIterated, ElitePool elitePool,
+			double eliteRate, Telemetry telemetry) {
 		this.isVerbose = isVerbose;
 		this.workerId = workerId;
 		this.instance = instance;
 		this.solution = solution;
+		this.localSearch = localSearch;
+		this.constructor = constructor;
+		this.isIterated = isIterated;
+		this.elitePool = elitePool;
+		this.eliteRate = eliteRate;
+		this.telemetry = telemetry;
+		this.counters = telemetry != null ? telemetry.getWorker(workerId) : new WorkerCounters(workerId);
+	}
+
+	/* Draw from a given stream instead of the generator of the thread.
+	 * With an iteration budget and no elite pool, the worker then finds
+	 * the same tour at every run
+	 * @param random The stream, used by this worker only
+	 */
+	public void setRandom(Random random) {
+		this.seededRandom = random;
+	}
+	
+	/* Stop after a count of descents (restarts and kicks) rather than
+	 * at the deadline
+	 * @param maxIterations The count of descents, 0 for no limit
+	 */
+	public void setMaxIterations(long maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/* Stop at the end of the run. The deadline is polled by the local
+	 * search between batches of moves and by the worker between two
+	 * descents; an interrupt only stops the worker between descents
+	 */
+	public void setDeadline(Deadline deadline) {
+		this.deadline = deadline;
+		localSearch.setDeadline(deadline);
+	}
+	
+	/* Publish the improvements of the best tour while the worker runs,
+	 * at most every PUBLISH_PERIOD unless the target is reached, and
+	 * the final tour at the end
+	 */
+	public void setBoard(SolutionBoard board) {
+		this.board = board;
+	}
+
+	/* Begin with a given tour instead of a constructed one, e.g. the
+	 * tour of a checkpoint. It is descended like any start tour
+	 * @param cities The cities in visiting order, not modified
+	 */
+	public void setStartTour(int[] cities) {
+		this.startTour = cities;
+	}
+
+	/* Let a tuner park the worker between two descents while the run
+	 * needs fewer threads
+	 */
+	public void setTuner(ThreadTuner tuner) {
+		this.tuner = tuner;
 	}
 
 	@Override
 	public void run() {
 		thread = Thread.currentThread();
-		random = ThreadLocalRandom.current();
-		solution.setOF(Double.MAX_VALUE); //No solution so it has the higher cost
+		random = seededRandom != null ? seededRandom : ThreadLocalRandom.current();
+		
+		//The tours are allocated once and reused by every restart
+		int n = instance.getN();
+		Tour best = new Tour(n);
+		Tour current = new Tour(n);
+		int restartKicks = Math.max(1, Math.min(KICK_LENGTH, n / 50));
+		int[] dirty = new int[6 * restartKicks];
+		best.setOF(Double.MAX_VALUE); //No solution so it has the higher cost
+		int failedKicks = 0;
+		long lastPublish = 0;
+		boolean isFirstStart = true;
+		long iteration = 0;
 		
 		do {
-			Solution randomSolution = generateRandomSolution();
-			Solution localSearchSol = localSearch(randomSolution);
-			localSearchSol.setOF(TSPCostCalculator.calcOF(instance, localSearchSol));
+			if(tuner != null)
+				tuner.awaitTurn(workerId);
+			if(isIterated && best.getOF() < Double.MAX_VALUE) {
+				//Stuck for too long: go on from the best tour of all the workers
+				if(failedKicks > n && adoptIncumbent(best))
+					failedKicks = 0;
+				
+				best.copyTo(current);
+				int countDirty = kick(current, dirty, 0);
+				long improvingBefore = localSearch.getImprovingMoves();
+				localSearch.optimize(current, dirty, countDirty);
+				
+				if(current.getOF() < best.getOF()) {
+					report(best.getOF(), current.getOF());
+					current.copyTo(best);
+					failedKicks = 0;
+					publish(best, false);
+					
+					if(elitePool != null && System.nanoTime() - lastPublish > PUBLISH_PERIOD) {
+						elitePool.offer(best);
+						lastPublish = System.nanoTime();
+					}
+				} else {
+					failedKicks++;
+				}
+				counters.publish(localSearch, localSearch.getImprovingMoves() - improvingBefore, true, best.getOF());
+				continue;
+			}
 			
-			if(isVerbose)
-				System.out.println("[Worker " + workerId +
-						"] " + randomSolution.getOF() + "\t-> " + localSearchSol.getOF());
+			//Restart from a perturbed elite tour, or from a constructed one
+			long improvingBefore = localSearch.getImprovingMoves();
+			boolean isResumed = isFirstStart && startTour != null;
+			if(!isResumed && elitePool != null && random.nextDouble() < eliteRate && pickElite(current)) {
+				int countDirty = 0;
+				for(int i = 0; i < restartKicks; i++) {
+					countDirty = kick(current, dirty, countDirty);
+				}
+				localSearch.optimize(current, dirty, countDirty);
+			} else {
+				if(isResumed)
+					current.setCities(startTour);
+				else
+					constructor.build(current, isFirstStart && workerId == 0 ? null : random);
+				isFirstStart = false;
+				localSearch.optimize(current);
+			}
+			current.setOF(TSPCostCalculator.calcOF(instance, current));
 			
-			if(localSearchSol.getOF() < solution.getOF()) {
-				//Copy the elements because the solution reference must not change
-				solution.clear();
-				solution.addAll(localSearchSol);
-				solution.setOF(localSearchSol.getOF());
+			if(current.getOF() < best.getOF()) {
+				report(best.getOF(), current.getOF());
+				current.copyTo(best);
+				publish(best, false);
 			}
+			counters.publish(localSearch, localSearch.getImprovingMoves() - improvingBefore, false, best.getOF());
+			if(elitePool != null)
+				elitePool.offer(current);
 
-		} while(!thread.isInterrupted());
-	}
-	
-	private Solution generateRandomSolution() {
-		Solution solution = new Solution();
+		} while(!deadline.isExpired() && !thread.isInterrupted()
+				&& (maxIterations == 0 || ++iteration < maxIterations));
 		
-		/* We add all the city (index) to the solution,
-		 * no more things are required. TSPCostCalculator
-		 * do the trick */
-		for(int i = 0; i < instance.getN(); i++) {
-			solution.add(i);
-		}
+		//The kicks update the cost incrementally, remove the rounding errors
+		if(isIterated)
+			best.setOF(TSPCostCalculator.calcOF(instance, best));
+		if(elitePool != null && best.getOF() < Double.MAX_VALUE)
+			elitePool.offer(best);
 		
-		//Randomize the solution indices (cities)
-		Collections.shuffle(solution, random);
-
-		//Compute the efficiency of the solution
-		solution.setOF(TSPCostCalculator.calcOF(instance, solution));
+		publish(best, true);
+		if(solution == null)
+			return;
 		
-		return solution;
+		//Copy the elements because the solution reference must not change
+		solution.clear();
+		solution.ensureCapacity(n);
+		for(int i = 0; i < n; i++) {
+			solution.add(best.getCity(i));
+		}
+		solution.setOF(best.getOF());
 	}
-
-	/* Return the best solution among many changed solution
-	 * (local search algorithm)
-	 * @param generatedSolution The solution to begin with
-	 * @return the best solution found with the algorithm,
-	 * null if no better solution
+	
+	/* Record an improvement of the best tour of this worker. Without
+	 * telemetry, the verbose mode prints it (the telemetry has its own
+	 * periodic report, which keeps the workers off the stdout lock)
 	 */
-	private Solution localSearch(Solution solution) {
-		boolean continueExploration = true;
-		Solution bestSolution = solution;
-		
-		while(continueExploration && !thread.isInterrupted())
-		{
-			Solution swapSolution;
-			
-			swapSolution = exploreNeighborhood(bestSolution);
-			if((float)swapSolution.getOF() < (float)bestSolution.getOF())
-				bestSolution = swapSolution;
-			else
-				continueExploration = false;
-		}
-		
-		return bestSolution;
+	private void report(double previousOF, double of) {
+		if(telemetry != null)
+			telemetry.recordBest(workerId, of);
+		else if(isVerbose)
+			System.out.println("[Worker " + workerId + "] " + previousOF + "\t-> " + of);
 	}
-
-	/* Return the best solution among many changed solution
-	 * (local search algorithm)
-	 * @param generatedSolution The solution to begin with
-	 * @return the best solution found with the algorithm
+	
+	/* Publish the best tour of this worker if it beats the one of the
+	 * run. The copy is only made when it does, and no more often than
+	 * every PUBLISH_PERIOD unless forced or reaching the target
 	 */
-	private Solution exploreNeighborhood(Solution solution) {
-		Solution bestSolution = solution;
-		Solution swapSolution = solution.clone();
-
-		for(int i = 0; i < solution.size() && !thread.isInterrupted(); i++)
-		{
-			for(int j = i + 1; j < solution.size() && !thread.isInterrupted(); j++)
-			{
-				double costBefore = swapSolution.getOF();
-				double relativeCostBefore = computeSwapCost(swapSolution, i, j);
-				swapSolution.swap(i, j);
-				double relativeCostAfter = computeSwapCost(swapSolution, i, j);
-				double diffCost = relativeCostBefore - relativeCostAfter;
-				
-				swapSolution.setOF(costBefore - diffCost);
-				
-				if(swapSolution.getOF() < bestSolution.getOF()) 
-					bestSolution = swapSolution.clone();
-			}
-		}
-		
-		return bestSolution;
+	private void publish(Tour tour, boolean isForced) {
+		if(board == null || !board.accepts(workerId, tour.getOF()))
+			return;
+		long now = System.nanoTime();
+		if(!isForced && now - lastBoardPublish < PUBLISH_PERIOD && !board.isTargetReached(tour.getOF()))
+			return;
+		/* The kicks update the cost incrementally, publish the exact one
+		 * without changing the tour: the search must not depend on when
+		 * the tour was published */
+		double of = isIterated && !isForced ? TSPCostCalculator.calcOF(instance, tour) : tour.getOF();
+		board.offer(workerId, tour, of);
+		lastBoardPublish = now;
 	}
-
-
-	/* Compute the relative cost of the swap of i and j
-	 * @param solution The solution to compute the cost
-	 * @param i The index to be swapped with j
-	 * @param j The index to be swapped with i
-	 * @return the relative cost
+	
+	/* Copy the best tour of all the workers if it is better than ours
+	 * @return true if the tour was replaced
+	 */
+	private boolean adoptIncumbent(Tour tour) {
+		if(elitePool == null)
+			return false;
+		EliteTour incumbent = elitePool.getIncumbent();
+		if(incumbent == null || incumbent.getOF() >= tour.getOF())
+			return false;
+		incumbent.copyTo(tour);
+		return true;
+	}
+	
+	/* Copy a random elite tour
+	 * @return false if there is no elite tour yet
+	 */
+	private boolean pickElite(Tour tour) {
+		EliteTour elite = elitePool.pick(random);
+		if(elite == null)
+			return false;
+		elite.copyTo(tour);
+		return true;
+	}
+	
+	/* Segment double bridge: A B C D becomes A C B D, B and C being
+	 * short segments so that the kick stays local
+	 * @param dirty Receives the cities at the ends of the changed edges
+	 * @param countDirty The count of cities already in dirty
+	 * @return the new count of dirty cities
 	 */
-	private double computeSwapCost(Solution solution, int i, int j) {
-		//Not accurate, but acceptable for float values
-		double cost;
-		int locFrom, locTo;
-		int n = solution.size();
+	private int kick(Tour tour, int[] dirty, int countDirty) {
+		int n = tour.size();
+		if(n < 8)
+			return countDirty;
 		
-		locFrom = solution.get((i - 1 + n) % n);
-		locTo = solution.get(i);
-		cost = instance.getDistance(locFrom, locTo);
+		int maxLength = Math.min(KICK_LENGTH, (n - 2) / 2);
+		int p = random.nextInt(n);
+		int lengthB = 1 + random.nextInt(maxLength);
+		int lengthC = 1 + random.nextInt(maxLength);
+		int posB1 = (p + 1) % n;
+		int posC1 = (p + lengthB + 1) % n;
+		int posC2 = (p + lengthB + lengthC) % n;
 		
-		locFrom = solution.get(i);
-		locTo = solution.get(i + 1);
-		cost += instance.getDistance(locFrom, locTo);
-
-		if(j - i != 1) {
-			locFrom = solution.get(j - 1);
-			locTo = solution.get(j);
-			cost += instance.getDistance(locFrom, locTo);
-		}
+		int a = tour.getCity(p);
+		int b1 = tour.getCity(posB1);
+		int b2 = tour.getCity((p + lengthB) % n);
+		int c1 = tour.getCity(posC1);
+		int c2 = tour.getCity(posC2);
+		int d1 = tour.getCity((posC2 + 1) % n);
+		
+		double removed = instance.getDistance(a, b1) + instance.getDistance(b2, c1)
+				+ instance.getDistance(c2, d1);
+		double added = instance.getDistance(a, c1) + instance.getDistance(c2, b1)
+				+ instance.getDistance(b2, d1);
 		
-		locFrom = solution.get(j);
-		locTo = solution.get((j + 1) % n);
-		cost += instance.getDistance(locFrom, locTo);
+		//Three reversals swap the two segments in place
+		tour.reverse(posB1, tour.getPosition(b2));
+		tour.reverse(posC1, posC2);
+		tour.reverse(posB1, posC2);
+		tour.setOF(tour.getOF() + added - removed);
 		
-		return cost;
+		dirty[countDirty++] = a;
+		dirty[countDirty++] = b1;
+		dirty[countDirty++] = b2;
+		dirty[countDirty++] = c1;
+		dirty[countDirty++] = c2;
+		dirty[countDirty++] = d1;
+		return countDirty;
 	}
 }
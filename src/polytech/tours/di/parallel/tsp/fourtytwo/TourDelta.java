@@ -0,0 +1,152 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/* One direction of a stream of tours between two processes, each tour
+ * sent as the difference from the previous one.
+ *
+ * Both ends keep the last tour of the stream, the base. A new tour is
+ * cut into runs of consecutive cities of the base, read forward or
+ * backward: a 2-opt move gives 3 runs, a double bridge 4, a descent a
+ * few dozens. A run is sent as its first position in the base and its
+ * length, negative when reversed (8 bytes), so a tour of n cities
+ * usually costs a few hundred bytes instead of 4n. The first tour, and
+ * any tour too far from the base, is sent whole (run count -1).
+ *
+ * Instances are not thread-safe: one per direction and per connection
+ */
+public class TourDelta {
+	private static final int FULL = -1;
+
+	//The last tour of the stream, null before the first one
+	private int[] base;
+	private int[] positions;
+	//Start and signed length of each run, reused by every tour
+	private int[] runs;
+	//Bytes written or read by this end, and the bytes of the same tours sent whole
+	private long deltaBytes, fullBytes;
+
+	/* Send a tour and make it the base
+	 * @param tour The cities in visiting order, copied
+	 */
+	public void write(DataOutputStream out, int[] tour) throws IOException {
+		int n = tour.length;
+		int count = base != null && base.length == n ? cut(tour) : FULL;
+		//A run costs two cities: past n/2 runs, the whole tour is shorter
+		if(count > n / 2)
+			count = FULL;
+
+		out.writeInt(count);
+		if(count == FULL) {
+			out.writeInt(n);
+			for(int city : tour) {
+				out.writeInt(city);
+			}
+			deltaBytes += 8 + 4L * n;
+		} else {
+			for(int r = 0; r < 2 * count; r++) {
+				out.writeInt(runs[r]);
+			}
+			deltaBytes += 4 + 8L * count;
+		}
+		fullBytes += 8 + 4L * n;
+		setBase(tour.clone());
+	}
+
+	/* Receive a tour and make it the base
+	 * @return the cities in visiting order, owned by the caller
+	 * @throws IOException if the stream breaks or does not hold a tour
+	 */
+	public int[] read(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		int[] tour;
+		if(count == FULL) {
+			int n = in.readInt();
+			if(n <= 0)
+				throw new IOException("Invalid tour size: " + n);
+			tour = new int[n];
+			for(int i = 0; i < n; i++) {
+				tour[i] = in.readInt();
+			}
+			deltaBytes += 8 + 4L * n;
+		} else {
+			if(base == null || count < 0 || count > base.length)
+				throw new IOException("Delta without a base tour");
+			int n = base.length;
+			tour = new int[n];
+			int i = 0;
+			for(int r = 0; r < count; r++) {
+				int start = in.readInt();
+				int length = in.readInt();
+				int step = length < 0 ? n - 1 : 1;
+				length = Math.abs(length);
+				if(start < 0 || start >= n || length == 0 || i + length > n)
+					throw new IOException("Invalid run: " + start + ", " + length);
+				for(int k = 0, p = start; k < length; k++, p = (p + step) % n) {
+					tour[i++] = base[p];
+				}
+			}
+			if(i != n)
+				throw new IOException("The runs hold " + i + " cities instead of " + n);
+			deltaBytes += 4 + 8L * count;
+		}
+		fullBytes += 8 + 4L * tour.length;
+		checkPermutation(tour);
+		setBase(tour.clone());
+		return tour;
+	}
+
+	/* Cut a tour into runs of the base, each as long as possible
+	 * @return the count of runs, or more than n / 2 if there are too many
+	 */
+	private int cut(int[] tour) {
+		int n = tour.length;
+		int count = 0;
+		for(int i = 0; i < n && count <= n / 2; count++) {
+			int start = positions[tour[i]];
+			int step = 1;
+			if(i + 1 < n && tour[i + 1] == base[(start + n - 1) % n])
+				step = n - 1;
+			int length = 1;
+			for(int p = (start + step) % n; i + length < n && tour[i + length] == base[p]; p = (p + step) % n) {
+				length++;
+			}
+			runs[2 * count] = start;
+			runs[2 * count + 1] = step == 1 ? length : -length;
+			i += length;
+		}
+		return count;
+	}
+
+	private void setBase(int[] tour) {
+		if(positions == null || positions.length != tour.length) {
+			positions = new int[tour.length];
+			runs = new int[2 * (tour.length / 2 + 1)];
+		}
+		base = tour;
+		for(int i = 0; i < tour.length; i++) {
+			positions[tour[i]] = i;
+		}
+	}
+
+	private static void checkPermutation(int[] tour) throws IOException {
+		boolean[] seen = new boolean[tour.length];
+		for(int city : tour) {
+			if(city < 0 || city >= tour.length || seen[city])
+				throw new IOException("Not a tour: city " + city);
+			seen[city] = true;
+		}
+	}
+
+	//Bytes written or read by this end
+	public long getDeltaBytes() {
+		return deltaBytes;
+	}
+
+	//Bytes the same tours would have taken if sent whole
+	public long getFullBytes() {
+		return fullBytes;
+	}
+}
@@ -0,0 +1,148 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/* Sends streams of tours through a pair of TourDelta, as between a
+ * worker and the coordinator, and checks that every tour is received
+ * exactly: 2-opt moves, double bridges, rotations and reversals of the
+ * whole tour, unrelated tours sent whole, and a change of size. Then
+ * checks that corrupted streams are refused.
+ *
+ * Usage: java polytech.tours.di.parallel.tsp.fourtytwo.TourDeltaTest
+ * [n] [count of tours], exits with 1 on the first mismatch
+ */
+public class TourDeltaTest {
+	private static final Random random = new Random(42);
+	private static final TourDelta writer = new TourDelta();
+	private static final TourDelta reader = new TourDelta();
+
+	public static void main(String[] args) throws IOException {
+		int n = args.length > 0 ? Integer.valueOf(args[0]) : 1000;
+		int count = args.length > 1 ? Integer.valueOf(args[1]) : 10_000;
+
+		int[] tour = new int[n];
+		for(int i = 0; i < n; i++) {
+			tour[i] = i;
+		}
+		shuffle(tour);
+		roundTrip(tour, "first tour");
+		for(int t = 0; t < count; t++) {
+			switch(random.nextInt(5)) {
+			case 0:
+				twoOpt(tour);
+				roundTrip(tour, "2-opt move");
+				break;
+			case 1:
+				doubleBridge(tour);
+				roundTrip(tour, "double bridge");
+				break;
+			case 2:
+				rotate(tour, 1 + random.nextInt(n - 1));
+				roundTrip(tour, "rotation");
+				break;
+			case 3:
+				reverse(tour, 0, n - 1);
+				roundTrip(tour, "reversal");
+				break;
+			default:
+				//A descent: a few dozens of moves since the last tour sent
+				for(int m = random.nextInt(50); m >= 0; m--) {
+					twoOpt(tour);
+				}
+				roundTrip(tour, "descent");
+			}
+		}
+		shuffle(tour);
+		roundTrip(tour, "unrelated tour");
+		int[] other = Arrays.copyOf(tour, n / 2);
+		for(int i = 0; i < other.length; i++) {
+			other[i] = i;
+		}
+		roundTrip(other, "change of size");
+		System.out.println(count + " tours of " + n + " cities received exactly, " + writer.getDeltaBytes()
+				+ " bytes instead of " + writer.getFullBytes());
+
+		refuse(new int[] {-1, 3, 0, 1, 1}, "duplicate city");
+		refuse(new int[] {-1, 3, 0, 1, 5}, "city out of range");
+		refuse(new int[] {-1, 0}, "empty tour");
+		refuse(new int[] {1, 0, 3}, "delta without a base");
+		System.out.println("Corrupted streams refused");
+	}
+
+	/* Send a tour through the pair, stop the program if the tour
+	 * received differs
+	 */
+	private static void roundTrip(int[] tour, String what) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		writer.write(new DataOutputStream(bytes), tour);
+		int[] received = reader.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		if(!Arrays.equals(tour, received)) {
+			System.err.println("Mismatch after a " + what);
+			System.exit(1);
+		}
+	}
+
+	/* Read a stream of ints with a fresh TourDelta, stop the program if
+	 * it is accepted
+	 */
+	private static void refuse(int[] stream, String what) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			DataOutputStream out = new DataOutputStream(bytes);
+			for(int value : stream) {
+				out.writeInt(value);
+			}
+			new TourDelta().read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		} catch (IOException e) {
+			return;
+		}
+		System.err.println("Accepted a " + what);
+		System.exit(1);
+	}
+
+	private static void twoOpt(int[] tour) {
+		int i = random.nextInt(tour.length);
+		int j = random.nextInt(tour.length);
+		reverse(tour, Math.min(i, j), Math.max(i, j));
+	}
+
+	//Exchange the segments [a, b) and [b, c), i.e. a double bridge on a < b < c
+	private static void doubleBridge(int[] tour) {
+		int n = tour.length;
+		int a = random.nextInt(n - 2);
+		int b = a + 1 + random.nextInt(n - a - 2);
+		int c = b + 1 + random.nextInt(n - b - 1);
+		int[] segment = Arrays.copyOfRange(tour, a, b);
+		System.arraycopy(tour, b, tour, a, c - b);
+		System.arraycopy(segment, 0, tour, a + c - b, segment.length);
+	}
+
+	private static void rotate(int[] tour, int shift) {
+		reverse(tour, 0, shift - 1);
+		reverse(tour, shift, tour.length - 1);
+		reverse(tour, 0, tour.length - 1);
+	}
+
+	private static void reverse(int[] tour, int i, int j) {
+		for(; i < j; i++, j--) {
+			int city = tour[i];
+			tour[i] = tour[j];
+			tour[j] = city;
+		}
+	}
+
+	private static void shuffle(int[] tour) {
+		for(int i = tour.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int city = tour[i];
+			tour[i] = tour[j];
+			tour[j] = city;
+		}
+	}
+}
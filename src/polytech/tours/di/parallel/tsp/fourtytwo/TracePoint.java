@@ -0,0 +1,35 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+/* An improvement of the best objective function of all the workers
+ */
+public class TracePoint {
+	private final long nanos;
+	private final int workerId;
+	private final double of;
+	
+	/* @param nanos The time since the beginning of the run
+	 * @param workerId The worker that found the tour
+	 * @param of The objective function of the tour
+	 */
+	public TracePoint(long nanos, int workerId, double of) {
+		this.nanos = nanos;
+		this.workerId = workerId;
+		this.of = of;
+	}
+	
+	public long getNanos() {
+		return nanos;
+	}
+	
+	public double getSeconds() {
+		return nanos / 1e9;
+	}
+	
+	public int getWorkerId() {
+		return workerId;
+	}
+	
+	public double getOF() {
+		return of;
+	}
+}
@@ -0,0 +1,324 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+import polytech.tours.di.parallel.tsp.CandidateLists;
+import polytech.tours.di.parallel.tsp.Instance;
+import polytech.tours.di.parallel.tsp.Tour;
+
+/* Descent over 2-opt moves (reversal of a segment) and Or-opt moves
+ * (relocation of a segment of 1 to 3 cities, possibly reversed).
+ *
+ * Only the moves creating an edge towards a candidate of a city are
+ * tried, and each is evaluated in O(1) from the 4 to 6 edges it
+ * touches. The first improving move found is applied in place.
+ * Don't-look bits: the cities to process wait in a queue, a city
+ * leaves it when no improving move starts from it and comes back
+ * only when one of its tour edges changes
+ */
+public class TwoOptSearch implements LocalSearch {
+	//Longest segment moved by an Or-opt move
+	private static final int MAX_SEGMENT = 3;
+	//Smallest gain accepted, to never loop on rounding errors
+	protected static final double EPSILON = 1e-7;
+	//Count of cities processed between two polls of the deadline
+	private static final int POLL_CITIES = 64;
+
+	protected final Instance instance;
+	protected final CandidateLists candidates;
+
+	//Queue of the cities whose don't-look bit is off, allocated once
+	private int[] queue;
+	private boolean[] queued;
+	private int head, count;
+	private Deadline deadline = Deadline.none();
+	
+	//Telemetry counters, see LocalSearch
+	protected long evaluatedMoves, improvingMoves;
+
+	public TwoOptSearch(Instance instance, CandidateLists candidates) {
+		this.instance = instance;
+		this.candidates = candidates;
+	}
+
+	@Override
+	public void optimize(Tour tour) {
+		if(!prepare(tour))
+			return;
+
+		//Every don't-look bit is off at the beginning
+		for(int i = 0; i < tour.size(); i++) {
+			push(tour.getCity(i));
+		}
+		descend(tour);
+	}
+
+	@Override
+	public void optimize(Tour tour, int[] cities, int citiesCount) {
+		if(!prepare(tour))
+			return;
+
+		//Only the given cities have their don't-look bit off
+		for(int i = 0; i < citiesCount; i++) {
+			push(cities[i]);
+		}
+		descend(tour);
+	}
+
+	/* Allocate the queue on the first call and empty it
+	 * @return false if the tour is too small for the moves
+	 */
+	private boolean prepare(Tour tour) {
+		int n = tour.size();
+		if(n < 2 * MAX_SEGMENT + 2)
+			return false;
+		if(queue == null || queue.length != n) {
+			queue = new int[n];
+			queued = new boolean[n];
+		}
+		while(count > 0) {
+			pop();
+		}
+		head = 0;
+		return true;
+	}
+
+	@Override
+	public void setDeadline(Deadline deadline) {
+		this.deadline = deadline;
+	}
+
+	@Override
+	public long getEvaluatedMoves() {
+		return evaluatedMoves;
+	}
+	
+	@Override
+	public long getImprovingMoves() {
+		return improvingMoves;
+	}
+
+	//Process the active cities until none is left
+	private void descend(Tour tour) {
+		for(int processed = 0; count > 0; processed++) {
+			if(processed % POLL_CITIES == 0 && deadline.isExpired())
+				return;
+			int city = pop();
+
+			//The city stays active until nothing improves from it
+			if(improve(tour, city))
+				push(city);
+		}
+	}
+
+	/* Try the moves starting from a city
+	 * @return true if a move was applied
+	 */
+	protected boolean improve(Tour tour, int city) {
+		return improveTwoOpt(tour, city, true)
+				|| improveTwoOpt(tour, city, false)
+				|| improveOrOpt(tour, city);
+	}
+
+	/* Try the 2-opt moves replacing the edge (a, succ(a)) or the edge
+	 * (pred(a), a) by an edge towards a candidate of a
+	 * @return true if a move was applied
+	 */
+	private boolean improveTwoOpt(Tour tour, int a, boolean forward) {
+		int b = forward ? tour.next(a) : tour.previous(a);
+		double dab = instance.getDistance(a, b);
+
+		for(int r = 0; r < candidates.getK(); r++) {
+			int c = candidates.get(a, r);
+			double dac = instance.getDistance(a, c);
+
+			//Candidates are sorted: no gain left past this one
+			if(dac >= dab)
+				break;
+
+			int d = forward ? tour.next(c) : tour.previous(c);
+			if(c == b || d == a)
+				continue;
+			evaluatedMoves++;
+
+			double delta = dac + instance.getDistance(b, d) - dab - instance.getDistance(c, d);
+			if(delta < -EPSILON) {
+				//a b ... c d becomes a c ... b d
+				if(forward)
+					reverseShorter(tour, b, c);
+				else
+					reverseShorter(tour, c, b);
+				tour.setOF(tour.getOF() + delta);
+				improvingMoves++;
+				push(a);
+				push(b);
+				push(c);
+				push(d);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Try to move the segments of 1 to MAX_SEGMENT cities starting or
+	 * ending at city a next to a candidate of one of their ends
+	 * @return true if a move was applied
+	 */
+	protected boolean improveOrOpt(Tour tour, int a) {
+		for(int length = 1; length <= MAX_SEGMENT; length++) {
+			//The segment s1..s2 begins at a, then ends at a
+			for(int side = 0; side < 2; side++) {
+				if(length == 1 && side == 1)
+					break;
+				int s1 = a, s2 = a;
+				for(int l = 1; l < length; l++) {
+					if(side == 0)
+						s2 = tour.next(s2);
+					else
+						s1 = tour.previous(s1);
+				}
+				if(moveSegment(tour, s1, s2, length))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/* Try to relocate the segment s1..s2 between two consecutive
+	 * cities u and v = succ(u), one of them being a candidate of s1
+	 * or s2
+	 * @return true if a move was applied
+	 */
+	private boolean moveSegment(Tour tour, int s1, int s2, int length) {
+		int p = tour.previous(s1);
+		int nx = tour.next(s2);
+		double removeGain = instance.getDistance(p, s1) + instance.getDistance(s2, nx)
+				- instance.getDistance(p, nx);
+		if(removeGain <= EPSILON)
+			return false;
+
+		for(int end = 0; end < 2; end++) {
+			int s = end == 0 ? s1 : s2;
+
+			for(int r = 0; r < candidates.getK(); r++) {
+				int c = candidates.get(s, r);
+				double dsc = instance.getDistance(s, c);
+				if(dsc >= removeGain)
+					break;
+				if(inSegment(tour, c, s1, length))
+					continue;
+
+				//Insert between c and its successor, then its predecessor
+				for(int dir = 0; dir < 2; dir++) {
+					int u = dir == 0 ? c : tour.previous(c);
+					int v = dir == 0 ? tour.next(c) : c;
+					if(inSegment(tour, u, s1, length) || inSegment(tour, v, s1, length))
+						continue;
+
+					/* s must be adjacent to c: u s1..s2 v keeps the
+					 * orientation, u s2..s1 v reverses the segment */
+					boolean reversed = (s == s1) != (c == u);
+					double insertCost = reversed
+							? instance.getDistance(u, s2) + instance.getDistance(s1, v)
+							: instance.getDistance(u, s1) + instance.getDistance(s2, v);
+					double delta = insertCost - instance.getDistance(u, v) - removeGain;
+					evaluatedMoves++;
+
+					if(delta < -EPSILON) {
+						applyOrOpt(tour, s1, s2, p, nx, u, v, length, reversed);
+						tour.setOF(tour.getOF() + delta);
+						improvingMoves++;
+						push(p);
+						push(nx);
+						push(s1);
+						push(s2);
+						push(u);
+						push(v);
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/* Move the segment S = s1..s2 between u and v = succ(u) with at
+	 * most three reversals, going through the shorter side of the tour.
+	 * Through X = nx..u: p S X v -> p X^r... -> p X S v
+	 * Through Y = v..p:  u Y S nx -> u S^r Y^r nx -> u S Y nx
+	 */
+	private void applyOrOpt(Tour tour, int s1, int s2, int p, int nx, int u, int v,
+			int length, boolean reversed) {
+		int n = tour.size();
+		int lengthX = (tour.getPosition(u) - tour.getPosition(nx) + n) % n + 1;
+
+		if(lengthX <= n - length - lengthX) {
+			reversePath(tour, s1, u);	//p u..nx s2..s1 v
+			reversePath(tour, u, nx);	//p nx..u s2..s1 v
+			if(!reversed)
+				reversePath(tour, s2, s1);
+		} else {
+			reversePath(tour, v, s2);	//u s2..s1 p..v nx
+			reversePath(tour, p, v);	//u s2..s1 v..p nx
+			if(!reversed)
+				reversePath(tour, s2, s1);
+		}
+	}
+
+	//Reverse the path going forward from city from to city to
+	private void reversePath(Tour tour, int from, int to) {
+		tour.reverse(tour.getPosition(from), tour.getPosition(to));
+	}
+
+	/* Reverse the path going forward from city from to city to, or
+	 * the rest of the tour if it is shorter: both give the same cycle,
+	 * only the orientation differs
+	 */
+	private void reverseShorter(Tour tour, int from, int to) {
+		reverseShorter(tour, tour.getPosition(from), tour.getPosition(to), null);
+	}
+
+	/* Reverse the positions i..j, or the rest of the tour if shorter
+	 * @param reversed If not null, receives in its first two cells the
+	 * positions actually reversed: reversing them again undoes the move
+	 * @return true if the rest of the tour was reversed, which mirrors
+	 * the orientation of the tour
+	 */
+	protected static boolean reverseShorter(Tour tour, int i, int j, int[] reversed) {
+		int n = tour.size();
+		boolean complement = 2 * ((j - i + n) % n + 1) > n;
+		if(complement) {
+			int from = j + 1 == n ? 0 : j + 1;
+			j = i == 0 ? n - 1 : i - 1;
+			i = from;
+		}
+		tour.reverse(i, j);
+		if(reversed != null) {
+			reversed[0] = i;
+			reversed[1] = j;
+		}
+		return complement;
+	}
+
+	//Tell if the city belongs to the segment of the given length beginning at s1
+	private boolean inSegment(Tour tour, int city, int s1, int length) {
+		int n = tour.size();
+		return (tour.getPosition(city) - tour.getPosition(s1) + n) % n < length;
+	}
+
+	protected void push(int city) {
+		if(queued[city])
+			return;
+		queued[city] = true;
+		int tail = head + count;
+		queue[tail >= queue.length ? tail - queue.length : tail] = city;
+		count++;
+	}
+
+	private int pop() {
+		int city = queue[head];
+		if(++head == queue.length)
+			head = 0;
+		count--;
+		queued[city] = false;
+		return city;
+	}
+}
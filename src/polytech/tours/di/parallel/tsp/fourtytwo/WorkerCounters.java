@@ -0,0 +1,83 @@
+package polytech.tours.di.parallel.tsp.fourtytwo;
+
+/* The counters of one worker. The worker is the only writer: it
+ * keeps the hot counters in plain fields of its local search and
+ * publishes them here once per descent, so the volatile writes stay
+ * off the hot path and no counter is shared between two writers.
+ * Any thread may read the counters at any time
+ */
+public class WorkerCounters {
+	private final int workerId;
+	
+	private volatile long evaluatedMoves;
+	private volatile long improvingMoves;
+	//Descents from a new tour (random, constructed or elite)
+	private volatile long restarts;
+	//Kicks followed by a local repair
+	private volatile long kicks;
+	//Improving moves of the longest descent
+	private volatile long maxDepth;
+	private volatile double bestOF = Double.MAX_VALUE;
+	
+	public WorkerCounters(int workerId) {
+		this.workerId = workerId;
+	}
+	
+	/* Publish the end of a descent
+	 * @param localSearch The search of the worker, read for its
+	 * cumulated counters
+	 * @param depth The count of improving moves of the descent
+	 * @param isKick true if the descent repaired a kick, false if it
+	 * started from a new tour
+	 * @param bestOF The best objective function of the worker
+	 */
+	void publish(LocalSearch localSearch, long depth, boolean isKick, double bestOF) {
+		evaluatedMoves = localSearch.getEvaluatedMoves();
+		improvingMoves = localSearch.getImprovingMoves();
+		if(isKick)
+			kicks++;
+		else
+			restarts++;
+		if(depth > maxDepth)
+			maxDepth = depth;
+		this.bestOF = bestOF;
+	}
+	
+	public int getWorkerId() {
+		return workerId;
+	}
+	
+	public long getEvaluatedMoves() {
+		return evaluatedMoves;
+	}
+	
+	public long getImprovingMoves() {
+		return improvingMoves;
+	}
+	
+	public long getRestarts() {
+		return restarts;
+	}
+	
+	public long getKicks() {
+		return kicks;
+	}
+	
+	public long getDescents() {
+		return restarts + kicks;
+	}
+	
+	public long getMaxDepth() {
+		return maxDepth;
+	}
+	
+	//Improving moves per descent: how far the local optima are from the start tours
+	public double getAverageDepth() {
+		long descents = getDescents();
+		return descents == 0 ? 0 : (double)improvingMoves / descents;
+	}
+	
+	public double getBestOF() {
+		return bestOF;
+	}
+}